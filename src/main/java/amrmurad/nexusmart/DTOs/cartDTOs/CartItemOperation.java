@@ -0,0 +1,15 @@
+package amrmurad.nexusmart.DTOs.cartDTOs;
+
+import amrmurad.nexusmart.enums.CartOperationType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CartItemOperation {
+    private CartOperationType op;
+    private Long productId;
+    private Integer quantity;   // added for ADD, new value for SET (zero or less removes), ignored for REMOVE
+}
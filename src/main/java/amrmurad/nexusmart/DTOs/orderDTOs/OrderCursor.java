@@ -0,0 +1,44 @@
+package amrmurad.nexusmart.DTOs.orderDTOs;
+
+import amrmurad.nexusmart.entities.Order;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Position of the last order returned in a user's history (newest first), encoded
+ * as an opaque url-safe token: base64("createdAt|id").
+ */
+public record OrderCursor(LocalDateTime createdAt, Long lastId) {
+
+    private static final char SEPARATOR = '|';
+
+    // Sentinel position that sits before the newest order
+    public static OrderCursor first() {
+        return new OrderCursor(LocalDateTime.parse("9999-12-31T23:59:59"), Long.MAX_VALUE);
+    }
+
+    public static OrderCursor after(Order order) {
+        return new OrderCursor(order.getCreatedAt(), order.getId());
+    }
+
+    public static OrderCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("invalid cursor");
+            }
+            return new OrderCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.valueOf(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+    }
+
+    public String encode() {
+        String raw = createdAt.toString() + SEPARATOR + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
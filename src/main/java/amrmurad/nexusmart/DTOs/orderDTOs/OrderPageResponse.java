@@ -0,0 +1,19 @@
+package amrmurad.nexusmart.DTOs.orderDTOs;
+
+import amrmurad.nexusmart.entities.Order;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderPageResponse {
+    private List<Order> items;
+    private String nextCursor; // null when this is the last page
+    private boolean hasNext;
+}
@@ -0,0 +1,19 @@
+package amrmurad.nexusmart.DTOs.productDTOs;
+
+import amrmurad.nexusmart.enums.StockAlertDirection;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LowStockAlert {
+    private Long productId;
+    private String productName;
+    private Integer stockQuantity; // null once the product is deleted
+    private Integer threshold;
+    private StockAlertDirection direction;
+}
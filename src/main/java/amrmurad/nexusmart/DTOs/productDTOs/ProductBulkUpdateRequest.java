@@ -0,0 +1,16 @@
+package amrmurad.nexusmart.DTOs.productDTOs;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductBulkUpdateRequest {
+    private Long id;
+    private BigDecimal price;       // optional, left unchanged when null
+    private Integer stockQuantity;  // optional, left unchanged when null
+}
@@ -0,0 +1,18 @@
+package amrmurad.nexusmart.DTOs.productDTOs;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductBulkUpdateResponse {
+    private int updatedCount;
+    private int failedCount;
+    private List<ProductBulkUpdateResult> results; // one entry per request item, in request order
+}
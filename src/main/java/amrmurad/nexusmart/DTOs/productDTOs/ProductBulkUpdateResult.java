@@ -0,0 +1,15 @@
+package amrmurad.nexusmart.DTOs.productDTOs;
+
+import amrmurad.nexusmart.enums.BulkUpdateStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductBulkUpdateResult {
+    private Long id;
+    private BulkUpdateStatus status;
+    private String message;
+}
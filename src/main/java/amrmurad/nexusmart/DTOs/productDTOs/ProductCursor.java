@@ -0,0 +1,81 @@
+package amrmurad.nexusmart.DTOs.productDTOs;
+
+import amrmurad.nexusmart.enums.ProductSort;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Position of the last row returned for a given sort, encoded as an opaque
+ * url-safe token: base64("SORT|sortKey|id").
+ */
+public record ProductCursor(ProductSort sort, String sortKey, Long lastId) {
+
+    private static final char SEPARATOR = '|';
+
+    // Sentinel positions that sit before every real row of the given sort
+    public static ProductCursor first(ProductSort sort) {
+        return switch (sort) {
+            case ID -> new ProductCursor(sort, "", 0L);
+            case PRICE -> new ProductCursor(sort, "-1", 0L);
+            case NAME -> new ProductCursor(sort, "", 0L);
+            case NEWEST -> new ProductCursor(sort, "9999-12-31T23:59:59", Long.MAX_VALUE);
+        };
+    }
+
+    public static ProductCursor after(ProductSort sort, ProductSummary product) {
+        String sortKey = switch (sort) {
+            case ID -> "";
+            case PRICE -> product.price().toPlainString();
+            case NAME -> product.name();
+            case NEWEST -> product.createdAt().toString();
+        };
+        return new ProductCursor(sort, sortKey, product.id());
+    }
+
+    public static ProductCursor decode(String token) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+
+        // the sort key may itself contain the separator (product names), so split on the outer ones
+        int first = raw.indexOf(SEPARATOR);
+        int last = raw.lastIndexOf(SEPARATOR);
+        if (first < 0 || first == last) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+        try {
+            ProductSort sort = ProductSort.valueOf(raw.substring(0, first));
+            Long lastId = Long.valueOf(raw.substring(last + 1));
+            return new ProductCursor(sort, raw.substring(first + 1, last), lastId);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+    }
+
+    public String encode() {
+        String raw = sort.name() + SEPARATOR + sortKey + SEPARATOR + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public BigDecimal priceKey() {
+        try {
+            return new BigDecimal(sortKey);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+    }
+
+    public LocalDateTime createdAtKey() {
+        try {
+            return LocalDateTime.parse(sortKey);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+    }
+}
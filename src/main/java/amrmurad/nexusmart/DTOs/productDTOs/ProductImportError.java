@@ -0,0 +1,13 @@
+package amrmurad.nexusmart.DTOs.productDTOs;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductImportError {
+    private long line;
+    private String message;
+}
@@ -0,0 +1,20 @@
+package amrmurad.nexusmart.DTOs.productDTOs;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductImportReport {
+    private long totalRows;
+    private long importedCount;
+    private long failedCount;
+    private List<ProductImportError> errors;
+    private boolean errorsTruncated; // true when more rows failed than are listed in errors
+}
@@ -0,0 +1,6 @@
+package amrmurad.nexusmart.DTOs.productDTOs;
+
+public interface ProductNameView {
+    Long getId();
+    String getName();
+}
@@ -0,0 +1,18 @@
+package amrmurad.nexusmart.DTOs.productDTOs;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductPageResponse<T> {
+    private List<T> items;
+    private String nextCursor; // null when this is the last page
+    private boolean hasNext;
+}
@@ -0,0 +1,8 @@
+package amrmurad.nexusmart.DTOs.productDTOs;
+
+import java.math.BigDecimal;
+
+public interface ProductPriceView {
+    Long getId();
+    BigDecimal getPrice();
+}
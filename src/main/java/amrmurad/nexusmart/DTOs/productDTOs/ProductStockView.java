@@ -0,0 +1,7 @@
+package amrmurad.nexusmart.DTOs.productDTOs;
+
+public interface ProductStockView {
+    Long getId();
+    Integer getStockQuantity();
+    Long getVersion();
+}
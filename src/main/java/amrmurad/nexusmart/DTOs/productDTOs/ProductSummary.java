@@ -0,0 +1,61 @@
+package amrmurad.nexusmart.DTOs.productDTOs;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The columns a product listing renders, selected directly by the repository so the
+ * description is never fetched. createdAt and version are only carried for keyset
+ * cursors and ETags and are not serialized.
+ */
+public record ProductSummary(Long id,
+                             String name,
+                             BigDecimal price,
+                             Integer stockQuantity,
+                             @JsonIgnore LocalDateTime createdAt,
+                             @JsonIgnore Long version) {
+
+    public static final List<String> FIELDS = List.of("id", "name", "price", "stockQuantity");
+
+    // Parses a comma separated sparse fieldset such as "id,name"; null means every field
+    public static Set<String> parseFields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> selected = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toSet());
+        for (String field : selected) {
+            if (!FIELDS.contains(field)) {
+                throw new IllegalArgumentException("unknown field '" + field + "', expected any of " + FIELDS);
+            }
+        }
+        return selected;
+    }
+
+    public Map<String, Object> select(Set<String> fields) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        if (fields.contains("id")) {
+            values.put("id", id);
+        }
+        if (fields.contains("name")) {
+            values.put("name", name);
+        }
+        if (fields.contains("price")) {
+            values.put("price", price);
+        }
+        if (fields.contains("stockQuantity")) {
+            values.put("stockQuantity", stockQuantity);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,9 @@
+package amrmurad.nexusmart.DTOs.productDTOs;
+
+import java.time.LocalDateTime;
+
+public interface ProductVersionView {
+    Long getId();
+    Long getVersion();
+    LocalDateTime getUpdatedAt();
+}
@@ -2,8 +2,10 @@ package amrmurad.nexusmart;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class NexusMartApplication {
     public static void main(String[] args) {
         SpringApplication.run(NexusMartApplication.class, args);
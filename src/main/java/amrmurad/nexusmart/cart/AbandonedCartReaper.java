@@ -0,0 +1,88 @@
+package amrmurad.nexusmart.cart;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Deletes carts, with their lines, that nobody has touched for a configurable number
+ * of days. Carts are purged oldest first in small batches, each in its own short
+ * transaction, so a large backlog never holds locks for long. Rows a request is
+ * currently changing are skipped and picked up by a later run.
+ */
+@Slf4j
+@Component
+public class AbandonedCartReaper {
+
+    private static final String SELECT_STALE_SQL = "SELECT id FROM carts WHERE updated_at < ? "
+            + "ORDER BY updated_at LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String DELETE_LINES_SQL = "DELETE FROM cart_items WHERE cart_id = ANY (?)";
+    private static final String DELETE_CARTS_SQL = "DELETE FROM carts WHERE id = ANY (?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration maxAge;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    public AbandonedCartReaper(JdbcTemplate jdbcTemplate,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${nexusmart.cart.reaper.enabled:true}") boolean enabled,
+                               @Value("${nexusmart.cart.reaper.max-age:30d}") Duration maxAge,
+                               @Value("${nexusmart.cart.reaper.batch-size:500}") int batchSize,
+                               @Value("${nexusmart.cart.reaper.max-batches-per-run:100}") int maxBatchesPerRun) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.maxAge = maxAge;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    @Scheduled(fixedDelayString = "${nexusmart.cart.reaper.interval:1h}",
+            initialDelayString = "${nexusmart.cart.reaper.initial-delay:5m}")
+    public void reap() {
+        if (!enabled) {
+            return;
+        }
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(maxAge));
+        int purged = 0;
+        try {
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                Integer deleted = transactionTemplate.execute(status -> purgeBatch(cutoff));
+                purged += deleted;
+                if (deleted < batchSize) {
+                    break;
+                }
+            }
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Abandoned cart purge stopped after {} carts, continuing on the next run: {}", purged, e.getMessage());
+            return;
+        }
+        if (purged > 0) {
+            log.info("Purged {} carts untouched since {}", purged, cutoff);
+        }
+    }
+
+    // Returns the number of carts deleted, lines go first because of the foreign key
+    int purgeBatch(Timestamp cutoff) {
+        List<Long> cartIds = jdbcTemplate.queryForList(SELECT_STALE_SQL, Long.class, cutoff, batchSize);
+        if (cartIds.isEmpty()) {
+            return 0;
+        }
+        Long[] ids = cartIds.toArray(Long[]::new);
+        jdbcTemplate.update(DELETE_LINES_SQL, ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)));
+        return jdbcTemplate.update(DELETE_CARTS_SQL, ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)));
+    }
+}
@@ -0,0 +1,186 @@
+package amrmurad.nexusmart.cart;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of cart states that are not yet in the database. Every mutation
+ * appends the full line array of the cart it touched, so replay only has to keep
+ * the last record per user. The log is split into numbered segments; a flush seals
+ * the current segment and deletes sealed ones once their carts are stored.
+ *
+ * <p>Appends reach the disk with {@code force} at most one sync interval after they are
+ * written, and a segment is forced before it is sealed, so power loss costs at most the
+ * last interval of changes.
+ *
+ * <p>Record layout: userId, cartId, line count, then the packed lines.
+ */
+@Slf4j
+class CartJournal {
+
+    private static final String PREFIX = "cart-";
+    private static final String SUFFIX = ".journal";
+    private static final int RECORD_HEADER_BYTES = 8 + 8 + 4;
+
+    private final Path directory;
+    private final long syncIntervalNanos;
+    private final List<Path> sealed = new ArrayList<>();
+    private FileChannel current;
+    private long sequence;
+    private long lastSyncNanos = System.nanoTime();
+    private boolean unsynced;
+
+    CartJournal(Path directory, Duration syncInterval) {
+        this.directory = directory;
+        this.syncIntervalNanos = syncInterval.toNanos();
+    }
+
+    /** Reads every segment in order and opens a fresh one for new appends. */
+    synchronized Map<Long, CartLines> replay() {
+        Map<Long, CartLines> latest = new LinkedHashMap<>();
+        try {
+            Files.createDirectories(directory);
+            for (Path segment : listSegments()) {
+                readSegment(segment, latest);
+                sealed.add(segment);
+                sequence = Math.max(sequence, sequenceOf(segment));
+            }
+            openNextSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("cart journal in " + directory + " could not be replayed", e);
+        }
+        return latest;
+    }
+
+    synchronized void append(Long userId, Long cartId, long[] lines, int size) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + 8 * size);
+        record.putLong(userId).putLong(cartId).putInt(size);
+        for (int i = 0; i < size; i++) {
+            record.putLong(lines[i]);
+        }
+        record.flip();
+        try {
+            while (record.hasRemaining()) {
+                current.write(record);
+            }
+            unsynced = true;
+            if (System.nanoTime() - lastSyncNanos >= syncIntervalNanos) {
+                force();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("cart journal append failed", e);
+        }
+    }
+
+    /** Forces appends that the sync interval has not covered yet, e.g. when the cart store goes quiet. */
+    synchronized void sync() {
+        if (!unsynced) {
+            return;
+        }
+        try {
+            force();
+        } catch (IOException e) {
+            throw new UncheckedIOException("cart journal sync failed", e);
+        }
+    }
+
+    /** Closes the current segment and returns every sealed segment that is not deleted yet. */
+    synchronized List<Path> rotate() {
+        try {
+            force();
+            current.close();
+            sealed.add(segmentPath(sequence));
+            openNextSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("cart journal rotation failed", e);
+        }
+        return List.copyOf(sealed);
+    }
+
+    synchronized void delete(List<Path> segments) {
+        for (Path segment : segments) {
+            try {
+                Files.deleteIfExists(segment);
+                sealed.remove(segment);
+            } catch (IOException e) {
+                log.warn("Could not delete cart journal segment {}: {}", segment, e.getMessage());
+            }
+        }
+    }
+
+    synchronized void close() {
+        try {
+            if (current != null) {
+                current.force(false);
+                current.close();
+            }
+        } catch (IOException e) {
+            log.warn("Could not close cart journal: {}", e.getMessage());
+        }
+    }
+
+    private void force() throws IOException {
+        current.force(false);
+        unsynced = false;
+        lastSyncNanos = System.nanoTime();
+    }
+
+    private void openNextSegment() throws IOException {
+        sequence++;
+        current = FileChannel.open(segmentPath(sequence),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void readSegment(Path segment, Map<Long, CartLines> latest) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+            int start = buffer.position();
+            long userId = buffer.getLong();
+            long cartId = buffer.getLong();
+            int size = buffer.getInt();
+            if (size < 0 || buffer.remaining() < 8L * size) {
+                // torn write from a crash, everything before it is intact
+                log.warn("Ignoring truncated cart journal record at {} in {}", start, segment);
+                return;
+            }
+            long[] lines = new long[size];
+            for (int i = 0; i < size; i++) {
+                lines[i] = buffer.getLong();
+            }
+            latest.remove(userId);
+            latest.put(userId, new CartLines(cartId, lines));
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(PREFIX)
+                            && file.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparingLong(CartJournal::sequenceOf))
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long segmentSequence) {
+        return directory.resolve(PREFIX + segmentSequence + SUFFIX);
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,44 @@
+package amrmurad.nexusmart.cart;
+
+/**
+ * Immutable view of a cart held by {@link WriteBehindCartStore}. Each line packs the
+ * product id and the quantity into one long, so a cart is a single primitive array.
+ */
+public record CartLines(Long cartId, long[] lines) {
+
+    private static final int QUANTITY_BITS = 24;
+    private static final long QUANTITY_MASK = (1L << QUANTITY_BITS) - 1;
+    public static final int MAX_QUANTITY = (int) QUANTITY_MASK;
+
+    public static long pack(long productId, int quantity) {
+        if (quantity < 1 || quantity > MAX_QUANTITY) {
+            throw new IllegalArgumentException("quantity must be between 1 and " + MAX_QUANTITY);
+        }
+        return productId << QUANTITY_BITS | quantity;
+    }
+
+    public static long productId(long line) {
+        return line >>> QUANTITY_BITS;
+    }
+
+    public static int quantity(long line) {
+        return (int) (line & QUANTITY_MASK);
+    }
+
+    public boolean contains(long productId) {
+        for (long line : lines) {
+            if (productId(line) == productId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int totalQuantity() {
+        int total = 0;
+        for (long line : lines) {
+            total += quantity(line);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,470 @@
+package amrmurad.nexusmart.cart;
+
+import amrmurad.nexusmart.entities.Cart;
+import amrmurad.nexusmart.entities.CartItem;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cart store used when {@code nexusmart.cart.store=memory}. Each user's cart lives in
+ * memory as a packed line array and every change is appended to a local journal
+ * before the call returns. Changed carts are written to carts/cart_items in
+ * batches on a fixed delay, and the journal is replayed on startup, so a crash
+ * between two flushes loses nothing.
+ *
+ * <p>Writes of one cart are serialized by that cart's flush lock, held from the snapshot
+ * until the write commits. The scheduled flush skips carts another write holds, so a
+ * checkout never waits for the whole batch, only for a batch that contains its own cart.
+ *
+ * <p>A cart is loaded from the database the first time it is touched. Clean carts
+ * are dropped again once they have been idle for a while.
+ */
+@Slf4j
+@Component
+public class WriteBehindCartStore {
+
+    private static final String DELETE_LINES_SQL = "DELETE FROM cart_items WHERE cart_id = ?";
+    // lines of products or carts deleted in the meantime are skipped instead of failing the whole batch
+    // each row draws a whole block of the pooled sequence, which keeps its id clear of the blocks Hibernate hands out
+    private static final String INSERT_LINE_SQL = "INSERT INTO cart_items (id, cart_id, product_id, quantity) "
+            + "SELECT nextval('cart_items_seq'), ?, ?, ? WHERE EXISTS (SELECT 1 FROM products WHERE id = ?) "
+            + "AND EXISTS (SELECT 1 FROM carts WHERE id = ?)";
+    private static final String UPDATE_COUNT_SQL =
+            "UPDATE carts SET item_count = ?, updated_at = LOCALTIMESTAMP WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Path journalDirectory;
+    private final long idleEvictionMillis;
+    private final Duration journalSyncInterval;
+
+    private final Map<Long, Entry> carts = new ConcurrentHashMap<>();
+    // only one scheduled flush rotates and deletes journal segments at a time
+    private final ReentrantLock globalFlushLock = new ReentrantLock();
+    private CartJournal journal;
+
+    public WriteBehindCartStore(JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${nexusmart.cart.store:database}") String store,
+                                @Value("${nexusmart.cart.journal-dir:data/cart-journal}") Path journalDirectory,
+                                @Value("${nexusmart.cart.idle-eviction:30m}") Duration idleEviction,
+                                @Value("${nexusmart.cart.journal-sync-interval:200ms}") Duration journalSyncInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = "memory".equalsIgnoreCase(store);
+        this.journalDirectory = journalDirectory;
+        this.idleEvictionMillis = idleEviction.toMillis();
+        this.journalSyncInterval = journalSyncInterval;
+    }
+
+    // Replayed before any request is served, otherwise a request could load an older cart from the database
+    @PostConstruct
+    void recover() {
+        if (!enabled) {
+            return;
+        }
+        journal = new CartJournal(journalDirectory, journalSyncInterval);
+        Map<Long, CartLines> replayed = journal.replay();
+        replayed.forEach((userId, lines) -> carts.put(userId, Entry.recovered(lines)));
+        log.info("In-memory cart store recovered {} unflushed carts from {}", replayed.size(), journalDirectory);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        flush();
+        journal.close();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CartLines get(Long userId, Supplier<Cart> loader) {
+        return apply(userId, loader, null);
+    }
+
+    public CartLines add(Long userId, Long productId, int quantity, Supplier<Cart> loader) {
+        return apply(userId, loader, entry -> entry.add(productId, quantity));
+    }
+
+    // A quantity of zero or less removes the line, like CartService.updateQuantity
+    public CartLines setQuantity(Long userId, Long productId, int quantity, Supplier<Cart> loader) {
+        return apply(userId, loader, entry -> entry.set(productId, quantity));
+    }
+
+    public CartLines remove(Long userId, Long productId, Supplier<Cart> loader) {
+        return apply(userId, loader, entry -> entry.remove(productId));
+    }
+
+    public CartLines clear(Long userId, Supplier<Cart> loader) {
+        return apply(userId, loader, Entry::clear);
+    }
+
+    // Replaces all lines with one journal record, for changes made of several steps
+    public CartLines replace(Long userId, UnaryOperator<CartLines> change, Supplier<Cart> loader) {
+        return apply(userId, loader, entry -> entry.replace(change.apply(entry.snapshot()).lines()));
+    }
+
+    // Total of a cart that is already in memory, without loading or creating anything
+    public OptionalInt findTotalQuantity(Long userId) {
+        Entry entry = enabled ? carts.get(userId) : null;
+        if (entry == null) {
+            return OptionalInt.empty();
+        }
+        synchronized (entry) {
+            return entry.evicted ? OptionalInt.empty() : OptionalInt.of(entry.snapshot().totalQuantity());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${nexusmart.cart.flush-interval:2s}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        globalFlushLock.lock();
+        try {
+            flushDirtyCarts();
+        } finally {
+            globalFlushLock.unlock();
+        }
+    }
+
+    private void flushDirtyCarts() {
+        // changes appended before the rotation are all marked dirty by now, so the sealed segments are
+        // covered by the carts collected below and can go once they are stored
+        List<Path> sealed = journal.rotate();
+
+        Map<Long, CartLines> dirty = new HashMap<>();
+        List<Entry> locked = new ArrayList<>();
+        boolean inFlight = false;
+        try {
+            for (Map.Entry<Long, Entry> cart : carts.entrySet()) {
+                Entry entry = cart.getValue();
+                if (!entry.flushLock.tryLock()) {
+                    // a checkout is writing this cart; if it rolls back, the sealed segments still hold its lines
+                    inFlight = true;
+                    continue;
+                }
+                synchronized (entry) {
+                    if (entry.dirty) {
+                        dirty.put(cart.getKey(), entry.snapshot());
+                        entry.dirty = false;
+                        locked.add(entry);
+                        continue;
+                    }
+                }
+                entry.flushLock.unlock();
+            }
+
+            if (!dirty.isEmpty()) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> write(List.copyOf(dirty.values())));
+                    log.debug("Flushed {} carts", dirty.size());
+                } catch (DataAccessException | TransactionException e) {
+                    log.warn("Cart flush of {} carts failed, retrying on the next run: {}", dirty.size(), e.getMessage());
+                    dirty.keySet().forEach(this::markDirty);
+                    return;
+                }
+            }
+        } finally {
+            locked.forEach(entry -> entry.flushLock.unlock());
+        }
+        if (!inFlight) {
+            journal.delete(sealed);
+        }
+        evictIdle();
+    }
+
+    // Covers appends made after the last interval-driven force when the store goes quiet
+    @Scheduled(fixedDelayString = "${nexusmart.cart.journal-sync-interval:200ms}")
+    public void syncJournal() {
+        if (enabled) {
+            journal.sync();
+        }
+    }
+
+    /**
+     * Writes one user's pending changes inside the caller's transaction, so checkout reads
+     * the cart as the user last saw it. The cart's flush lock is held until that transaction
+     * completes; if it rolls back the cart is marked dirty again and goes out with the next batch.
+     */
+    public void flush(Long userId) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry = carts.get(userId);
+        if (entry == null) {
+            return;
+        }
+        entry.flushLock.lock();
+        CartLines lines;
+        synchronized (entry) {
+            if (!entry.dirty) {
+                entry.flushLock.unlock();
+                return;
+            }
+            lines = entry.snapshot();
+            entry.dirty = false;
+        }
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        markDirty(userId);
+                    }
+                    entry.flushLock.unlock();
+                }
+            });
+            transactionTemplate.executeWithoutResult(status -> write(List.of(lines)));
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(List.of(lines)));
+        } catch (RuntimeException e) {
+            markDirty(userId);
+            throw e;
+        } finally {
+            entry.flushLock.unlock();
+        }
+    }
+
+    /**
+     * Takes checked-out quantities (product id to quantity) off a cart in memory once the caller's
+     * transaction commits. Lines added since checkout read the cart stay, and the new state is
+     * journaled, so a replay cannot bring the ordered lines back.
+     */
+    public void subtractAfterCommit(Long userId, Map<Long, Integer> ordered) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    subtract(userId, ordered);
+                }
+            });
+        } else {
+            subtract(userId, ordered);
+        }
+    }
+
+    private CartLines apply(Long userId, Supplier<Cart> loader, Consumer<Entry> change) {
+        while (true) {
+            Entry entry = carts.get(userId);
+            if (entry == null) {
+                Entry loaded = Entry.loaded(loader.get());
+                entry = carts.putIfAbsent(userId, loaded);
+                if (entry == null) {
+                    entry = loaded;
+                }
+            }
+            synchronized (entry) {
+                if (entry.evicted) {
+                    continue;
+                }
+                entry.lastAccessMillis = System.currentTimeMillis();
+                if (change != null) {
+                    change.accept(entry);
+                    entry.dirty = true;
+                    journal.append(userId, entry.cartId, entry.lines, entry.size);
+                }
+                return entry.snapshot();
+            }
+        }
+    }
+
+    private void write(List<CartLines> dirtyCarts) {
+        List<Long> cartIds = dirtyCarts.stream().map(CartLines::cartId).toList();
+        jdbcTemplate.batchUpdate(DELETE_LINES_SQL, cartIds, cartIds.size(), (ps, cartId) -> ps.setLong(1, cartId));
+
+        List<long[]> rows = new ArrayList<>();
+        for (CartLines cart : dirtyCarts) {
+            for (long line : cart.lines()) {
+                rows.add(new long[]{cart.cartId(), line});
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_LINE_SQL, rows, rows.size(), (ps, row) -> {
+            long productId = CartLines.productId(row[1]);
+            ps.setLong(1, row[0]);
+            ps.setLong(2, productId);
+            ps.setInt(3, CartLines.quantity(row[1]));
+            ps.setLong(4, productId);
+            ps.setLong(5, row[0]);
+        });
+
+        // the in-memory lines are authoritative, so the count is written as is (lines of deleted products included)
+        jdbcTemplate.batchUpdate(UPDATE_COUNT_SQL, dirtyCarts, dirtyCarts.size(), (ps, cart) -> {
+            ps.setInt(1, cart.totalQuantity());
+            ps.setLong(2, cart.cartId());
+        });
+    }
+
+    private void markDirty(Long userId) {
+        Entry entry = carts.get(userId);
+        if (entry != null) {
+            synchronized (entry) {
+                entry.dirty = true;
+            }
+        }
+    }
+
+    // A cart that is not in memory is already right in the database, there is nothing to do
+    private void subtract(Long userId, Map<Long, Integer> ordered) {
+        Entry entry = carts.get(userId);
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            if (entry.evicted) {
+                return;
+            }
+            ordered.forEach((productId, quantity) -> entry.subtract(productId, quantity));
+            entry.dirty = true;
+            journal.append(userId, entry.cartId, entry.lines, entry.size);
+        }
+    }
+
+    private void evictIdle() {
+        long idleBefore = System.currentTimeMillis() - idleEvictionMillis;
+        carts.forEach((userId, entry) -> {
+            if (entry.flushLock.isLocked()) {
+                return; // a rolled back write would have nowhere to mark the cart dirty again
+            }
+            synchronized (entry) {
+                if (!entry.dirty && entry.lastAccessMillis < idleBefore) {
+                    entry.evicted = true;
+                    carts.remove(userId, entry);
+                }
+            }
+        });
+    }
+
+    /** One cart, guarded by its own monitor; flushLock orders the database writes of the cart. */
+    private static final class Entry {
+        private final ReentrantLock flushLock = new ReentrantLock();
+        private final Long cartId;
+        private long[] lines;
+        private int size;
+        private boolean dirty;
+        private boolean evicted;
+        private long lastAccessMillis;
+
+        private Entry(Long cartId, long[] lines, boolean dirty) {
+            this.cartId = cartId;
+            this.lines = lines;
+            this.size = lines.length;
+            this.dirty = dirty;
+            this.lastAccessMillis = System.currentTimeMillis();
+        }
+
+        static Entry loaded(Cart cart) {
+            List<CartItem> items = cart.getItems();
+            long[] lines = new long[items.size()];
+            for (int i = 0; i < items.size(); i++) {
+                lines[i] = CartLines.pack(items.get(i).getProduct().getId(), items.get(i).getQuantity());
+            }
+            return new Entry(cart.getId(), lines, false);
+        }
+
+        static Entry recovered(CartLines cart) {
+            return new Entry(cart.cartId(), cart.lines(), true);
+        }
+
+        void add(long productId, int quantity) {
+            int index = indexOf(productId);
+            if (index >= 0) {
+                lines[index] = CartLines.pack(productId, CartLines.quantity(lines[index]) + quantity);
+            } else {
+                append(CartLines.pack(productId, quantity));
+            }
+        }
+
+        void set(long productId, int quantity) {
+            if (quantity <= 0) {
+                remove(productId);
+                return;
+            }
+            int index = indexOf(productId);
+            if (index >= 0) {
+                lines[index] = CartLines.pack(productId, quantity);
+            } else {
+                append(CartLines.pack(productId, quantity));
+            }
+        }
+
+        void remove(long productId) {
+            int index = indexOf(productId);
+            if (index >= 0) {
+                System.arraycopy(lines, index + 1, lines, index, size - index - 1);
+                size--;
+            }
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void subtract(long productId, int quantity) {
+            int index = indexOf(productId);
+            if (index >= 0) {
+                set(productId, CartLines.quantity(lines[index]) - quantity);
+            }
+        }
+
+        void replace(long[] newLines) {
+            lines = newLines.clone();
+            size = newLines.length;
+        }
+
+        CartLines snapshot() {
+            return new CartLines(cartId, Arrays.copyOf(lines, size));
+        }
+
+        private void append(long line) {
+            if (size == lines.length) {
+                lines = Arrays.copyOf(lines, Math.max(4, size * 2));
+            }
+            lines[size++] = line;
+        }
+
+        private int indexOf(long productId) {
+            for (int i = 0; i < size; i++) {
+                if (CartLines.productId(lines[i]) == productId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
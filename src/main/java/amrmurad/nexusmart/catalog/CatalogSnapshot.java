@@ -0,0 +1,316 @@
+package amrmurad.nexusmart.catalog;
+
+import amrmurad.nexusmart.DTOs.productDTOs.ProductSummary;
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Binary copy of the whole catalog on local disk. It is rewritten periodically from
+ * the database and memory-mapped at startup, where it warms the product cache
+ * without a full table read. While the database is unreachable, product reads fall
+ * back to it and serve possibly stale data instead of failing.
+ *
+ * <p>Layout: a header (magic, format, taken-at millis) followed by one record per
+ * product in id order: id, version, price in cents, stock, created-at and
+ * updated-at millis, then the length-prefixed UTF-8 name and description (-1 for null).
+ */
+@Slf4j
+@Component
+public class CatalogSnapshot {
+
+    private static final int MAGIC = 0x4E584353; // "NXCS"
+    private static final short FORMAT = 1;
+    private static final int HEADER_BYTES = 4 + 2 + 8;
+    private static final int FIXED_RECORD_BYTES = 8 + 8 + 8 + 4 + 8 + 8;
+    private static final int WRITE_BATCH_SIZE = 1000;
+
+    private final ProductRepository productRepository;
+    private final ProductCache productCache;
+    private final ProductVersionRegistry productVersionRegistry;
+    private final boolean enabled;
+    private final Path path;
+
+    private volatile MappedSnapshot current;
+
+    public CatalogSnapshot(ProductRepository productRepository,
+                           ProductCache productCache,
+                           ProductVersionRegistry productVersionRegistry,
+                           @Value("${nexusmart.catalog-snapshot.enabled:true}") boolean enabled,
+                           @Value("${nexusmart.catalog-snapshot.path:data/catalog.snapshot}") Path path) {
+        this.productRepository = productRepository;
+        this.productCache = productCache;
+        this.productVersionRegistry = productVersionRegistry;
+        this.enabled = enabled;
+        this.path = path;
+    }
+
+    // Runs after the version registry is loaded, which tells which snapshot records are still current
+    @Order(1)
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAndWarm() {
+        if (!enabled || !load()) {
+            return;
+        }
+        MappedSnapshot snapshot = current;
+        int warmed = 0;
+        for (int i = 0; i < snapshot.size; i++) {
+            int offset = snapshot.offsets[i];
+            long version = snapshot.buffer.getLong(offset + 8);
+            boolean unchanged = productVersionRegistry.find(snapshot.ids[i])
+                    .map(known -> known.version() != null && known.version() == version)
+                    .orElse(false);
+            if (unchanged) {
+                productCache.warm(snapshot.product(offset));
+                warmed++;
+            }
+        }
+        log.info("Warmed product cache with {} of {} products from catalog snapshot taken at {}",
+                warmed, snapshot.size, Instant.ofEpochMilli(snapshot.takenAtMillis));
+    }
+
+    @Scheduled(fixedDelayString = "${nexusmart.catalog-snapshot.interval:5m}",
+            initialDelayString = "${nexusmart.catalog-snapshot.initial-delay:1m}")
+    public void write() {
+        if (!enabled) {
+            return;
+        }
+        long takenAtMillis = System.currentTimeMillis();
+        Path temp = null;
+        try {
+            Path directory = path.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, "catalog", ".tmp");
+
+            int count = 0;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeShort(FORMAT);
+                out.writeLong(takenAtMillis);
+
+                // keyset batches outside a transaction, so the persistence context never holds more than one batch
+                long afterId = 0;
+                List<Product> batch;
+                do {
+                    batch = productRepository.findBatchAfter(afterId, PageRequest.ofSize(WRITE_BATCH_SIZE));
+                    for (Product product : batch) {
+                        writeRecord(out, product);
+                    }
+                    count += batch.size();
+                    if (!batch.isEmpty()) {
+                        afterId = batch.get(batch.size() - 1).getId();
+                    }
+                } while (batch.size() == WRITE_BATCH_SIZE);
+            }
+
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            load();
+            log.info("Wrote catalog snapshot with {} products to {}", count, path);
+        } catch (IOException | DataAccessException e) {
+            log.warn("Catalog snapshot not written: {}", e.getMessage());
+            deleteQuietly(temp);
+        }
+    }
+
+    public boolean isLoaded() {
+        return current != null;
+    }
+
+    public Optional<Product> findById(Long id) {
+        MappedSnapshot snapshot = current;
+        if (snapshot == null) {
+            return Optional.empty();
+        }
+        int index = Arrays.binarySearch(snapshot.ids, 0, snapshot.size, id);
+        return index >= 0 ? Optional.of(snapshot.product(snapshot.offsets[index])) : Optional.empty();
+    }
+
+    // Summaries of the given ids that exist in the snapshot, in no particular order
+    public List<ProductSummary> findSummaries(Collection<Long> ids) {
+        MappedSnapshot snapshot = current;
+        if (snapshot == null) {
+            return List.of();
+        }
+        List<ProductSummary> summaries = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            int index = Arrays.binarySearch(snapshot.ids, 0, snapshot.size, id);
+            if (index >= 0) {
+                summaries.add(snapshot.summary(snapshot.offsets[index]));
+            }
+        }
+        return summaries;
+    }
+
+    public long takenAtMillis() {
+        MappedSnapshot snapshot = current;
+        return snapshot == null ? -1 : snapshot.takenAtMillis;
+    }
+
+    boolean load() {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                log.warn("Catalog snapshot {} is larger than 2GB and is ignored", path);
+                return false;
+            }
+            // the mapping stays valid after the channel is closed and after the file is replaced
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            current = MappedSnapshot.index(buffer);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Catalog snapshot {} could not be loaded: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, Product product) throws IOException {
+        out.writeLong(product.getId());
+        out.writeLong(product.getVersion() == null ? 0 : product.getVersion());
+        out.writeLong(ProductPriceIndex.toCents(product.getPrice(), RoundingMode.HALF_UP));
+        out.writeInt(product.getStockQuantity());
+        out.writeLong(toMillis(product.getCreatedAt()));
+        out.writeLong(toMillis(product.getUpdatedAt()));
+        writeString(out, product.getName());
+        writeString(out, product.getDescription());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time == null ? -1 : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        return millis < 0 ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Could not delete {}", file, e);
+        }
+    }
+
+    /** A mapped snapshot file plus the id to record offset index built when it was loaded. */
+    private static final class MappedSnapshot {
+        private final MappedByteBuffer buffer;
+        private final long takenAtMillis;
+        private final long[] ids;
+        private final int[] offsets;
+        private final int size;
+
+        private MappedSnapshot(MappedByteBuffer buffer, long takenAtMillis, long[] ids, int[] offsets, int size) {
+            this.buffer = buffer;
+            this.takenAtMillis = takenAtMillis;
+            this.ids = ids;
+            this.offsets = offsets;
+            this.size = size;
+        }
+
+        static MappedSnapshot index(MappedByteBuffer buffer) {
+            if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getShort(4) != FORMAT) {
+                throw new IllegalArgumentException("not a catalog snapshot");
+            }
+            long takenAtMillis = buffer.getLong(6);
+
+            long[] ids = new long[1024];
+            int[] offsets = new int[1024];
+            int size = 0;
+            int position = HEADER_BYTES;
+            while (position < buffer.limit()) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                    offsets = Arrays.copyOf(offsets, size * 2);
+                }
+                ids[size] = buffer.getLong(position);
+                offsets[size] = position;
+                size++;
+
+                int namePosition = position + FIXED_RECORD_BYTES;
+                int descriptionPosition = namePosition + 4 + Math.max(0, buffer.getInt(namePosition));
+                position = descriptionPosition + 4 + Math.max(0, buffer.getInt(descriptionPosition));
+            }
+            return new MappedSnapshot(buffer, takenAtMillis, ids, offsets, size);
+        }
+
+        // Absolute reads only, so concurrent readers never share a buffer position
+        Product product(int offset) {
+            Product product = new Product();
+            product.setId(buffer.getLong(offset));
+            product.setVersion(buffer.getLong(offset + 8));
+            product.setPrice(BigDecimal.valueOf(buffer.getLong(offset + 16), 2));
+            product.setStockQuantity(buffer.getInt(offset + 24));
+            product.setCreatedAt(fromMillis(buffer.getLong(offset + 28)));
+            product.setUpdatedAt(fromMillis(buffer.getLong(offset + 36)));
+
+            int namePosition = offset + FIXED_RECORD_BYTES;
+            product.setName(readString(namePosition));
+            int descriptionPosition = namePosition + 4 + Math.max(0, buffer.getInt(namePosition));
+            product.setDescription(readString(descriptionPosition));
+            return product;
+        }
+
+        ProductSummary summary(int offset) {
+            return new ProductSummary(
+                    buffer.getLong(offset),
+                    readString(offset + FIXED_RECORD_BYTES),
+                    BigDecimal.valueOf(buffer.getLong(offset + 16), 2),
+                    buffer.getInt(offset + 24),
+                    fromMillis(buffer.getLong(offset + 28)),
+                    buffer.getLong(offset + 8));
+        }
+
+        private String readString(int position) {
+            int length = buffer.getInt(position);
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(position + 4, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
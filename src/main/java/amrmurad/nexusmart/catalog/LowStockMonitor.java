@@ -0,0 +1,189 @@
+package amrmurad.nexusmart.catalog;
+
+import amrmurad.nexusmart.DTOs.productDTOs.LowStockAlert;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductStockView;
+import amrmurad.nexusmart.enums.StockAlertDirection;
+import amrmurad.nexusmart.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps the set of products whose stock is under a tracking ceiling, updated from
+ * ProductChangedEvent instead of re-querying the table. Low-stock lookups for any
+ * threshold up to the ceiling are answered from memory, and dashboards can
+ * subscribe to a Server-Sent Events stream that only fires when a product
+ * crosses their threshold.
+ */
+@Slf4j
+@Component
+public class LowStockMonitor {
+
+    private final ProductRepository productRepository;
+    private final int trackingCeiling;
+    private final long streamTimeoutMillis;
+
+    // products at or above the ceiling stay in the map once an event was seen, so their version still guards
+    // against older events; below the ceiling they come from the startup query
+    private final Map<Long, StockLevel> stockLevels = new ConcurrentHashMap<>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    // one sender thread keeps alerts in order and keeps slow clients off the committing threads
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "low-stock-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ReadWriteLock subscriptionLock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    public LowStockMonitor(ProductRepository productRepository,
+                           @Value("${nexusmart.low-stock.tracking-ceiling:100}") int trackingCeiling,
+                           @Value("${nexusmart.low-stock.stream-timeout:30m}") Duration streamTimeout) {
+        this.productRepository = productRepository;
+        this.trackingCeiling = trackingCeiling;
+        this.streamTimeoutMillis = streamTimeout.toMillis();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<ProductStockView> lowStock = productRepository.findStockBelow(trackingCeiling);
+        stockLevels.clear();
+        for (ProductStockView view : lowStock) {
+            stockLevels.put(view.getId(), new StockLevel(view.getStockQuantity(), view.getVersion()));
+        }
+        ready = true;
+        log.info("Low stock monitor tracking {} products under {}", stockLevels.size(), trackingCeiling);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Long productId = event.productId();
+        Integer newStock = event.isDeleted() ? null : event.product().getStockQuantity();
+        Long newVersion = event.isDeleted() ? null : event.product().getVersion();
+
+        // Alerts are queued while the map entry is locked, so alerts for one product leave in the order
+        // its stock changed; the read lock keeps a new subscriber's snapshot from overlapping them
+        subscriptionLock.readLock().lock();
+        try {
+            // a product missing from the map is at or above the ceiling, so at or above every threshold
+            stockLevels.compute(productId, (id, current) -> {
+                if (newStock != null && current != null && current.isNewerThan(newVersion)) {
+                    // an older write whose event arrived late
+                    return current;
+                }
+                dispatchCrossings(event, current == null ? null : current.quantity(), newStock);
+                return newStock == null ? null : new StockLevel(newStock, newVersion);
+            });
+        } finally {
+            subscriptionLock.readLock().unlock();
+        }
+    }
+
+    public boolean canServe(int threshold) {
+        return ready && threshold <= trackingCeiling;
+    }
+
+    /** Ids of products with stock below the threshold, lowest stock first. */
+    public List<Long> findIdsBelow(int threshold) {
+        return stockLevels.entrySet().stream()
+                .filter(entry -> entry.getValue().quantity() < threshold)
+                .sorted(Comparator.<Map.Entry<Long, StockLevel>>comparingInt(entry -> entry.getValue().quantity())
+                        .thenComparing(Map.Entry::getKey))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    public SseEmitter subscribe(int threshold) {
+        if (threshold < 0 || threshold > trackingCeiling) {
+            throw new IllegalArgumentException("threshold must be between 0 and " + trackingCeiling);
+        }
+        SseEmitter emitter = newEmitter();
+        Subscription subscription = new Subscription(threshold, emitter);
+        emitter.onCompletion(() -> subscriptions.remove(subscription));
+        emitter.onTimeout(() -> subscriptions.remove(subscription));
+        emitter.onError(error -> subscriptions.remove(subscription));
+
+        // every change lands either in the snapshot or in a crossing queued after it, never in both
+        subscriptionLock.writeLock().lock();
+        try {
+            subscriptions.add(subscription);
+            List<Long> current = findIdsBelow(threshold);
+            dispatcher.execute(() -> send(subscription, "snapshot", current));
+        } finally {
+            subscriptionLock.writeLock().unlock();
+        }
+        log.debug("Low stock subscriber added with threshold {}, {} subscribers", threshold, subscriptions.size());
+        return emitter;
+    }
+
+    int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    SseEmitter newEmitter() {
+        return new SseEmitter(streamTimeoutMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        subscriptions.forEach(subscription -> subscription.emitter().complete());
+    }
+
+    private void dispatchCrossings(ProductChangedEvent event, Integer oldStock, Integer newStock) {
+        for (Subscription subscription : subscriptions) {
+            int threshold = subscription.threshold();
+            boolean wasLow = oldStock != null && oldStock < threshold;
+            boolean isLow = newStock != null && newStock < threshold;
+            if (wasLow == isLow) {
+                continue;
+            }
+            StockAlertDirection direction = event.isDeleted() ? StockAlertDirection.REMOVED
+                    : isLow ? StockAlertDirection.BELOW_THRESHOLD : StockAlertDirection.RECOVERED;
+            LowStockAlert alert = LowStockAlert.builder()
+                    .productId(event.productId())
+                    .productName(event.isDeleted() ? null : event.product().getName())
+                    .stockQuantity(newStock)
+                    .threshold(threshold)
+                    .direction(direction)
+                    .build();
+            dispatcher.execute(() -> send(subscription, "crossing", alert));
+        }
+    }
+
+    private void send(Subscription subscription, String eventName, Object payload) {
+        try {
+            subscription.emitter().send(SseEmitter.event().name(eventName).data(payload));
+        } catch (IOException | IllegalStateException e) {
+            subscriptions.remove(subscription);
+            subscription.emitter().completeWithError(e);
+        }
+    }
+
+    private record Subscription(int threshold, SseEmitter emitter) {
+    }
+
+    private record StockLevel(int quantity, Long version) {
+
+        boolean isNewerThan(Long otherVersion) {
+            return version != null && otherVersion != null && version > otherVersion;
+        }
+    }
+}
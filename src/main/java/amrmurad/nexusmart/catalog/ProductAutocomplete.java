@@ -0,0 +1,420 @@
+package amrmurad.nexusmart.catalog;
+
+import amrmurad.nexusmart.DTOs.productDTOs.ProductNameView;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductSalesView;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductSuggestion;
+import amrmurad.nexusmart.repository.OrderItemsRepository;
+import amrmurad.nexusmart.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Radix trie over normalized product names where every node keeps the ids of
+ * the most popular products below it. A lookup is a walk down the prefix and a
+ * copy of that node's list, independent of how many products share the prefix.
+ * Chains of single-child nodes are collapsed into one edge, and the per-node
+ * arrays only grow as far as they are filled, so the trie holds about two nodes
+ * per distinct name rather than one per character.
+ *
+ * <p>Popularity starts from units sold and grows with product views. Views are
+ * buffered and folded into the trie once a second, so hot products do not take
+ * the write lock on every request.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductAutocomplete {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private final ProductRepository productRepository;
+    private final OrderItemsRepository orderItemsRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, String> namesById = new HashMap<>();
+    private final Map<Long, String> normalizedById = new HashMap<>();
+    private final Map<Long, Long> popularity = new HashMap<>();
+    private final Map<Long, LongAdder> pendingViews = new ConcurrentHashMap<>();
+    private Node root = new Node("");
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<ProductNameView> names = productRepository.findAllNames();
+        List<ProductSalesView> sales = orderItemsRepository.sumQuantityByProduct();
+
+        lock.writeLock().lock();
+        try {
+            root = new Node("");
+            namesById.clear();
+            normalizedById.clear();
+            popularity.clear();
+            for (ProductSalesView view : sales) {
+                popularity.put(view.getProductId().longValue(), view.getQuantity());
+            }
+            for (ProductNameView view : names) {
+                add(view.getId(), view.getName());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product autocomplete built with {} names", namesById.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.isDeleted()) {
+                remove(event.productId());
+                popularity.remove(event.productId());
+            } else if (!event.product().getName().equals(namesById.get(event.productId()))) {
+                remove(event.productId());
+                add(event.productId(), event.product().getName());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void recordView(Long productId) {
+        pendingViews.computeIfAbsent(productId, id -> new LongAdder()).increment();
+    }
+
+    // Adders stay in the map and are drained with sumThenReset, which zeroes each cell atomically:
+    // a view recorded while draining is either counted now or left for the next run, never lost
+    @Scheduled(fixedDelay = 1000)
+    public void applyPendingViews() {
+        Map<Long, Long> views = new HashMap<>();
+        pendingViews.forEach((productId, adder) -> {
+            long count = adder.sumThenReset();
+            if (count > 0) {
+                views.put(productId, count);
+            }
+        });
+        if (views.isEmpty()) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            views.forEach((productId, count) -> {
+                if (namesById.containsKey(productId)) {
+                    popularity.merge(productId, count, Long::sum);
+                    promote(productId);
+                } else {
+                    pendingViews.remove(productId);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    long popularityOf(Long productId) {
+        lock.readLock().lock();
+        try {
+            return popularity.getOrDefault(productId, 0L);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int nodeCount() {
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            List<Node> pending = new ArrayList<>(List.of(root));
+            while (!pending.isEmpty()) {
+                Node node = pending.remove(pending.size() - 1);
+                count++;
+                pending.addAll(Arrays.asList(node.children));
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<ProductSuggestion> suggest(String prefix, int limit) {
+        String normalized = ProductNameIndex.normalize(prefix);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int matched = 0;
+            while (matched < normalized.length()) {
+                Node child = node.child(normalized.charAt(matched));
+                if (child == null) {
+                    return List.of();
+                }
+                int common = child.commonPrefix(normalized, matched);
+                // a prefix ending inside an edge has the same products below it as the edge's end
+                if (common < child.label.length() && matched + common < normalized.length()) {
+                    return List.of();
+                }
+                node = child;
+                matched += common;
+            }
+            int count = Math.min(limit, node.topSize);
+            List<ProductSuggestion> suggestions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long id = node.top[i];
+                suggestions.add(new ProductSuggestion(id, namesById.get(id)));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ============= TRIE MAINTENANCE (write lock held) =============
+
+    private void add(Long id, String name) {
+        String normalized = ProductNameIndex.normalize(name);
+        namesById.put(id, name);
+        normalizedById.put(id, normalized);
+
+        Node node = root;
+        int matched = 0;
+        while (matched < normalized.length()) {
+            Node child = node.child(normalized.charAt(matched));
+            if (child == null) {
+                child = new Node(normalized.substring(matched));
+                node.addChild(child);
+            } else {
+                int common = child.commonPrefix(normalized, matched);
+                if (common < child.label.length()) {
+                    child = node.split(child, common);
+                }
+            }
+            child.offer(id, this);
+            node = child;
+            matched += child.label.length();
+        }
+        node.addTerminal(id);
+    }
+
+    private void remove(Long id) {
+        String normalized = normalizedById.remove(id);
+        namesById.remove(id);
+        if (normalized == null) {
+            return;
+        }
+
+        List<Node> path = path(normalized);
+        path.get(path.size() - 1).removeTerminal(id);
+
+        // a node that lost an entry refills from its children, so walk back up from the leaf;
+        // on the way empty nodes are dropped and nodes left with a single child absorb it
+        for (int i = path.size() - 1; i >= 1; i--) {
+            Node node = path.get(i);
+            if (node.terminals.length == 0 && node.children.length == 0) {
+                path.get(i - 1).removeChild(node);
+                continue;
+            }
+            if (node.removeFromTop(id)) {
+                node.recomputeTop(this);
+            }
+            if (node.terminals.length == 0 && node.children.length == 1) {
+                node.absorbOnlyChild();
+            }
+        }
+    }
+
+    // Popularity only grows, so the product can only move up in the lists along its path
+    private void promote(Long id) {
+        List<Node> path = path(normalizedById.get(id));
+        for (int i = 1; i < path.size(); i++) {
+            path.get(i).removeFromTop(id);
+            path.get(i).offer(id, this);
+        }
+    }
+
+    // Nodes from the root down to the one ending at an indexed name
+    private List<Node> path(String normalized) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int matched = 0;
+        while (matched < normalized.length()) {
+            node = node.child(normalized.charAt(matched));
+            path.add(node);
+            matched += node.label.length();
+        }
+        return path;
+    }
+
+    // Higher popularity first, then shorter names, then lower ids
+    private int compare(long left, long right) {
+        int byPopularity = Long.compare(popularity.getOrDefault(right, 0L), popularity.getOrDefault(left, 0L));
+        if (byPopularity != 0) {
+            return byPopularity;
+        }
+        int byLength = Integer.compare(normalizedById.get(left).length(), normalizedById.get(right).length());
+        return byLength != 0 ? byLength : Long.compare(left, right);
+    }
+
+    private static final class Node {
+        private static final long[] NO_IDS = new long[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        // characters on the edge from the parent, children are kept sorted by their first one
+        private String label;
+        private Node[] children = NO_CHILDREN;
+        private long[] top = NO_IDS;
+        private int topSize;
+        private long[] terminals = NO_IDS;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node child(char key) {
+            int position = position(key);
+            return position >= 0 ? children[position] : null;
+        }
+
+        // Number of leading label characters that match key from the given offset
+        int commonPrefix(String key, int offset) {
+            int length = Math.min(label.length(), key.length() - offset);
+            int common = 0;
+            while (common < length && label.charAt(common) == key.charAt(offset + common)) {
+                common++;
+            }
+            return common;
+        }
+
+        void addChild(Node child) {
+            int insertAt = -position(child.label.charAt(0)) - 1;
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newChildren[insertAt] = child;
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            children = newChildren;
+        }
+
+        void removeChild(Node child) {
+            int position = position(child.label.charAt(0));
+            Node[] newChildren = children.length == 1 ? NO_CHILDREN : new Node[children.length - 1];
+            System.arraycopy(children, 0, newChildren, 0, position);
+            System.arraycopy(children, position + 1, newChildren, position, children.length - position - 1);
+            children = newChildren;
+        }
+
+        // Cuts the child's edge after the given number of characters; the new middle node
+        // has exactly the child's subtree below it, so it starts with the child's list
+        Node split(Node child, int length) {
+            int position = position(child.label.charAt(0));
+            Node middle = new Node(child.label.substring(0, length));
+            middle.children = new Node[]{child};
+            middle.top = Arrays.copyOf(child.top, child.topSize);
+            middle.topSize = child.topSize;
+            child.label = child.label.substring(length);
+            children[position] = middle;
+            return middle;
+        }
+
+        // Only valid without terminals: the single child holds this node's whole subtree
+        void absorbOnlyChild() {
+            Node child = children[0];
+            label = label + child.label;
+            children = child.children;
+            terminals = child.terminals;
+            top = child.top;
+            topSize = child.topSize;
+        }
+
+        void offer(long id, ProductAutocomplete ranking) {
+            int position = topSize;
+            while (position > 0 && ranking.compare(id, top[position - 1]) < 0) {
+                position--;
+            }
+            if (position >= MAX_SUGGESTIONS) {
+                return;
+            }
+            if (topSize == top.length) {
+                top = Arrays.copyOf(top, Math.min(MAX_SUGGESTIONS, Math.max(1, top.length * 2)));
+            }
+            int end = Math.min(topSize, MAX_SUGGESTIONS - 1);
+            System.arraycopy(top, position, top, position + 1, end - position);
+            top[position] = id;
+            topSize = end + 1;
+        }
+
+        boolean removeFromTop(long id) {
+            for (int i = 0; i < topSize; i++) {
+                if (top[i] == id) {
+                    System.arraycopy(top, i + 1, top, i, topSize - i - 1);
+                    topSize--;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Children already hold the best entries of their subtrees, so they are enough to refill this node
+        void recomputeTop(ProductAutocomplete ranking) {
+            topSize = 0;
+            for (long id : terminals) {
+                offer(id, ranking);
+            }
+            for (Node child : children) {
+                for (int i = 0; i < child.topSize; i++) {
+                    offer(child.top[i], ranking);
+                }
+            }
+        }
+
+        void addTerminal(long id) {
+            terminals = Arrays.copyOf(terminals, terminals.length + 1);
+            terminals[terminals.length - 1] = id;
+        }
+
+        void removeTerminal(long id) {
+            for (int i = 0; i < terminals.length; i++) {
+                if (terminals[i] == id) {
+                    long[] remaining = terminals.length == 1 ? NO_IDS : new long[terminals.length - 1];
+                    System.arraycopy(terminals, 0, remaining, 0, i);
+                    System.arraycopy(terminals, i + 1, remaining, i, terminals.length - i - 1);
+                    terminals = remaining;
+                    return;
+                }
+            }
+        }
+
+        private int position(char key) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char midKey = children[mid].label.charAt(0);
+                if (midKey < key) {
+                    low = mid + 1;
+                } else if (midKey > key) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package amrmurad.nexusmart.catalog;
+
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.repository.ProductRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Read-through cache in front of {@link ProductRepository#findById}. Caffeine's
+ * W-TinyLFU policy keeps frequently read products resident, entries are weighed by
+ * their approximate heap size, and low-stock products get a shorter TTL so cart
+ * pages do not show a stale "in stock" for long. Hit, miss and eviction counts
+ * are published under the "products" cache metrics.
+ *
+ * <p>Only detached copies are stored and handed out, so callers can never
+ * mutate a shared instance or a managed entity.
+ */
+@Component
+public class ProductCache {
+
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private final ProductRepository productRepository;
+    private final Cache<Long, Product> cache;
+
+    public ProductCache(ProductRepository productRepository,
+                        MeterRegistry meterRegistry,
+                        @Value("${nexusmart.product-cache.max-weight-bytes:67108864}") long maxWeightBytes,
+                        @Value("${nexusmart.product-cache.ttl:10m}") Duration ttl,
+                        @Value("${nexusmart.product-cache.low-stock-ttl:30s}") Duration lowStockTtl,
+                        @Value("${nexusmart.product-cache.low-stock-threshold:10}") int lowStockThreshold) {
+        this.productRepository = productRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((Long id, Product product) -> estimateSize(product))
+                .expireAfter(new Expiry<Long, Product>() {
+                    @Override
+                    public long expireAfterCreate(Long id, Product product, long currentTime) {
+                        boolean lowStock = product.getStockQuantity() != null
+                                && product.getStockQuantity() < lowStockThreshold;
+                        return (lowStock ? lowStockTtl : ttl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long id, Product product, long currentTime, long currentDuration) {
+                        return expireAfterCreate(id, product, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long id, Product product, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "products");
+    }
+
+    public Optional<Product> findById(Long id) {
+        Product cached = cache.get(id, key -> productRepository.findById(key).map(ProductCache::copyOf).orElse(null));
+        return Optional.ofNullable(cached).map(ProductCache::copyOf);
+    }
+
+    // Preloads an entry that is known to match the database, e.g. from the catalog snapshot
+    public void warm(Product product) {
+        cache.put(product.getId(), copyOf(product));
+    }
+
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        invalidate(event.productId());
+    }
+
+    static Product copyOf(Product product) {
+        Product copy = new Product();
+        copy.setId(product.getId());
+        copy.setName(product.getName());
+        copy.setDescription(product.getDescription());
+        copy.setPrice(product.getPrice());
+        copy.setStockQuantity(product.getStockQuantity());
+        copy.setCreatedAt(product.getCreatedAt());
+        copy.setUpdatedAt(product.getUpdatedAt());
+        copy.setVersion(product.getVersion());
+        return copy;
+    }
+
+    private static int estimateSize(Product product) {
+        int chars = length(product.getName()) + length(product.getDescription());
+        return ENTRY_OVERHEAD_BYTES + 2 * chars;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
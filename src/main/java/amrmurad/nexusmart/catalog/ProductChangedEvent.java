@@ -0,0 +1,29 @@
+package amrmurad.nexusmart.catalog;
+
+import amrmurad.nexusmart.entities.Product;
+
+/**
+ * Published by every code path that writes a product, so in-memory catalog
+ * structures can follow the database. Listeners run after the surrounding
+ * transaction commits; {@code product} is null when the product was deleted.
+ * {@code priceChanged} is false for writes that cannot have moved the price,
+ * such as stock updates, so price structures can skip them.
+ */
+public record ProductChangedEvent(Long productId, Product product, boolean priceChanged) {
+
+    public static ProductChangedEvent upserted(Product product) {
+        return new ProductChangedEvent(product.getId(), product, true);
+    }
+
+    public static ProductChangedEvent stockChanged(Product product) {
+        return new ProductChangedEvent(product.getId(), product, false);
+    }
+
+    public static ProductChangedEvent deleted(Long productId) {
+        return new ProductChangedEvent(productId, null, true);
+    }
+
+    public boolean isDeleted() {
+        return product == null;
+    }
+}
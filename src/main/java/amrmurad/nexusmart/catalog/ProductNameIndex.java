@@ -0,0 +1,253 @@
+package amrmurad.nexusmart.catalog;
+
+import amrmurad.nexusmart.DTOs.productDTOs.ProductNameView;
+import amrmurad.nexusmart.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Trigram inverted index over product names. A query matches a product when its
+ * normalized name contains the normalized query, same as the old
+ * {@code LIKE %name%} search, but candidates come from intersecting posting
+ * lists instead of scanning the table.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductNameIndex {
+
+    static final int GRAM = 3;
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final ProductRepository productRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, String> namesById = new HashMap<>();
+    private final Map<String, Postings> postingsByGram = new HashMap<>();
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<ProductNameView> names = productRepository.findAllNames();
+
+        lock.writeLock().lock();
+        try {
+            namesById.clear();
+            postingsByGram.clear();
+            for (ProductNameView view : names) {
+                add(view.getId(), view.getName());
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product name index built with {} products and {} trigrams", namesById.size(), postingsByGram.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        // stock and price writes leave the name alone, they must not churn the postings
+        if (!event.isDeleted() && normalize(event.product().getName()).equals(indexedName(event.productId()))) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            remove(event.productId());
+            if (!event.isDeleted()) {
+                add(event.productId(), event.product().getName());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private String indexedName(Long id) {
+        lock.readLock().lock();
+        try {
+            return namesById.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns the ids of products whose name contains {@code query}, best match
+     * first: exact name, then prefix, then word start, then anywhere in the name.
+     */
+    public List<Long> search(String query, int limit) {
+        String needle = normalize(query);
+        if (needle.isEmpty()) {
+            return List.of();
+        }
+
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (needle.length() < GRAM) {
+                // too short to have a trigram, the name map is the whole candidate set
+                namesById.forEach((id, name) -> collect(id, name, needle, matches));
+            } else {
+                for (long id : candidates(needle)) {
+                    collect(id, namesById.get(id), needle, matches);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return matches.stream()
+                .sorted(Comparator.comparingInt(Match::score).reversed()
+                        .thenComparingInt(Match::nameLength)
+                        .thenComparingLong(Match::id))
+                .limit(limit)
+                .map(Match::id)
+                .toList();
+    }
+
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFKD);
+        String stripped = COMBINING_MARKS.matcher(decomposed).replaceAll("");
+        return WHITESPACE.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    static Set<String> grams(String normalized) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= normalized.length(); i++) {
+            grams.add(normalized.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    // Must be called with the read lock held
+    private long[] candidates(String needle) {
+        List<Postings> lists = new ArrayList<>();
+        for (String gram : grams(needle)) {
+            Postings postings = postingsByGram.get(gram);
+            if (postings == null) {
+                return new long[0];
+            }
+            lists.add(postings);
+        }
+        lists.sort(Comparator.comparingInt(postings -> postings.size));
+
+        // walk the rarest trigram and probe the others
+        Postings rarest = lists.get(0);
+        long[] result = new long[rarest.size];
+        int count = 0;
+        for (int i = 0; i < rarest.size; i++) {
+            long id = rarest.ids[i];
+            boolean inAll = true;
+            for (int j = 1; j < lists.size() && inAll; j++) {
+                inAll = lists.get(j).contains(id);
+            }
+            if (inAll) {
+                result[count++] = id;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static void collect(long id, String name, String needle, List<Match> matches) {
+        int position = name.indexOf(needle);
+        if (position < 0) {
+            return;
+        }
+        int score;
+        if (name.length() == needle.length()) {
+            score = 4;
+        } else if (position == 0) {
+            score = 3;
+        } else if (name.charAt(position - 1) == ' ' || name.contains(" " + needle)) {
+            score = 2;
+        } else {
+            score = 1;
+        }
+        matches.add(new Match(id, score, name.length()));
+    }
+
+    // Must be called with the write lock held
+    private void add(Long id, String name) {
+        String normalized = normalize(name);
+        namesById.put(id, normalized);
+        for (String gram : grams(normalized)) {
+            postingsByGram.computeIfAbsent(gram, key -> new Postings()).add(id);
+        }
+    }
+
+    // Must be called with the write lock held
+    private void remove(Long id) {
+        String previous = namesById.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (String gram : grams(previous)) {
+            Postings postings = postingsByGram.get(gram);
+            if (postings != null && postings.remove(id) && postings.size == 0) {
+                postingsByGram.remove(gram);
+            }
+        }
+    }
+
+    private record Match(long id, int score, int nameLength) {
+    }
+
+    /** Sorted primitive id list for one trigram. */
+    private static final class Postings {
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            int insertAt = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+            ids[insertAt] = id;
+            size++;
+        }
+
+        boolean remove(long id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package amrmurad.nexusmart.catalog;
+
+import amrmurad.nexusmart.DTOs.productDTOs.ProductPriceView;
+import amrmurad.nexusmart.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Products ordered by (price in cents, id), held in two parallel primitive
+ * arrays so a price range is two binary searches and a slice, with no boxed
+ * BigDecimal or Long per product.
+ *
+ * <p>Change events only record the new price of a product, and events that did not
+ * touch the price are ignored. The next read merges
+ * everything recorded since the previous one in a single pass over the arrays,
+ * so a bulk import or update costs one rebuild instead of one array shift per
+ * row, and writers never hold the lock that readers wait on.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductPriceIndex {
+
+    private static final BigDecimal MAX_PRICE = BigDecimal.valueOf(Long.MAX_VALUE, 2);
+    private static final BigDecimal MIN_PRICE = BigDecimal.valueOf(Long.MIN_VALUE, 2);
+
+    private final ProductRepository productRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long[] cents = new long[0];
+    private long[] ids = new long[0];
+    private int size;
+    private volatile boolean ready;
+
+    // product id to its new price in cents, null for a deleted product; guarded by itself
+    private final Map<Long, Long> pending = new HashMap<>();
+    private volatile boolean hasPending;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<ProductPriceView> prices = new ArrayList<>(productRepository.findAllPrices());
+        prices.sort(Comparator.comparing(ProductPriceView::getPrice).thenComparing(ProductPriceView::getId));
+
+        long[] newCents = new long[Math.max(16, prices.size())];
+        long[] newIds = new long[newCents.length];
+        for (int i = 0; i < prices.size(); i++) {
+            newCents[i] = toCents(prices.get(i).getPrice(), RoundingMode.HALF_UP);
+            newIds[i] = prices.get(i).getId();
+        }
+
+        lock.writeLock().lock();
+        try {
+            cents = newCents;
+            ids = newIds;
+            size = prices.size();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product price index built with {} products", prices.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        // stock-only writes (every checkout) would otherwise force a full merge on the next read
+        if (!event.priceChanged()) {
+            return;
+        }
+        Long priceCents = event.isDeleted() ? null : toCents(event.product().getPrice(), RoundingMode.HALF_UP);
+        synchronized (pending) {
+            pending.put(event.productId(), priceCents);
+            hasPending = true;
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Ids of products priced within [minPrice, maxPrice], cheapest first. */
+    public List<Long> findIdsInRange(BigDecimal minPrice, BigDecimal maxPrice, int offset, int limit) {
+        long minCents = toCents(minPrice, RoundingMode.CEILING);
+        long maxCents = toCents(maxPrice, RoundingMode.FLOOR);
+        if (hasPending) {
+            lock.writeLock().lock();
+            try {
+                applyPending();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        lock.readLock().lock();
+        try {
+            // no real id reaches Long.MAX_VALUE, so this lands just past every product at maxCents
+            int to = firstIndexAtLeast(maxCents, Long.MAX_VALUE);
+            int from = (int) Math.min(to, (long) firstIndexAtLeast(minCents, Long.MIN_VALUE) + offset);
+            List<Long> result = new ArrayList<>(Math.max(0, Math.min(limit, to - from)));
+            for (int i = from; i < to && result.size() < limit; i++) {
+                result.add(ids[i]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Prices beyond what a long holds in cents are clamped, they lie outside every stored price anyway
+    static long toCents(BigDecimal price, RoundingMode roundingMode) {
+        if (price.compareTo(MAX_PRICE) > 0) {
+            return Long.MAX_VALUE;
+        }
+        if (price.compareTo(MIN_PRICE) < 0) {
+            return Long.MIN_VALUE;
+        }
+        return price.setScale(2, roundingMode).unscaledValue().longValue();
+    }
+
+    // First position whose (cents, id) is >= the given pair
+    private int firstIndexAtLeast(long targetCents, long targetId) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(cents[mid], ids[mid], targetCents, targetId) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int compare(long leftCents, long leftId, long rightCents, long rightId) {
+        int byCents = Long.compare(leftCents, rightCents);
+        return byCents != 0 ? byCents : Long.compare(leftId, rightId);
+    }
+
+    // Must be called with the write lock held: drops the old slot of every changed product
+    // and merges the new prices in, one pass over the arrays however many rows changed
+    private void applyPending() {
+        Map<Long, Long> changes;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            changes = new HashMap<>(pending);
+            pending.clear();
+            hasPending = false;
+        }
+
+        long[][] added = changes.entrySet().stream()
+                .filter(change -> change.getValue() != null)
+                .map(change -> new long[]{change.getValue(), change.getKey()})
+                .sorted((left, right) -> compare(left[0], left[1], right[0], right[1]))
+                .toArray(long[][]::new);
+
+        long[] newCents = new long[Math.max(16, size + added.length)];
+        long[] newIds = new long[newCents.length];
+        int count = 0;
+        int next = 0;
+        for (int i = 0; i < size; i++) {
+            if (changes.containsKey(ids[i])) {
+                continue;
+            }
+            while (next < added.length && compare(added[next][0], added[next][1], cents[i], ids[i]) < 0) {
+                newCents[count] = added[next][0];
+                newIds[count++] = added[next++][1];
+            }
+            newCents[count] = cents[i];
+            newIds[count++] = ids[i];
+        }
+        for (; next < added.length; next++) {
+            newCents[count] = added[next][0];
+            newIds[count++] = added[next][1];
+        }
+
+        cents = newCents;
+        ids = newIds;
+        size = count;
+    }
+}
@@ -0,0 +1,91 @@
+package amrmurad.nexusmart.catalog;
+
+import amrmurad.nexusmart.DTOs.productDTOs.ProductSummary;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductVersionView;
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Current version and modification time of every product, so conditional GETs
+ * can be answered with 304 before any entity is loaded or serialized.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductVersionRegistry {
+
+    private final ProductRepository productRepository;
+    private final Map<Long, ProductVersion> versions = new ConcurrentHashMap<>();
+
+    // Ordered first: the catalog snapshot checks its records against these versions
+    @Order(0)
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<ProductVersionView> views = productRepository.findAllVersions();
+        for (ProductVersionView view : views) {
+            versions.put(view.getId(), new ProductVersion(view.getId(), view.getVersion(), toMillis(view.getUpdatedAt())));
+        }
+        log.info("Product version registry loaded {} products", versions.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isDeleted() || event.product().getVersion() == null) {
+            versions.remove(event.productId());
+        } else {
+            // after-commit events of concurrent writes can arrive out of order, an older one must not win
+            versions.merge(event.productId(), of(event.product()),
+                    (current, changed) -> changed.version() >= current.version() ? changed : current);
+        }
+    }
+
+    public Optional<ProductVersion> find(Long productId) {
+        return Optional.ofNullable(versions.get(productId));
+    }
+
+    public static ProductVersion of(Product product) {
+        return new ProductVersion(product.getId(), product.getVersion(), toMillis(product.getUpdatedAt()));
+    }
+
+    /**
+     * Strong ETag for a list response, derived from the ids and versions it contains and
+     * the sparse fieldset it was rendered with (null for every field).
+     */
+    public static String eTagOf(List<ProductSummary> products, Set<String> fields) {
+        StringBuilder key = new StringBuilder();
+        key.append(fields == null ? "*" : String.join(",", new TreeSet<>(fields))).append('|');
+        for (ProductSummary product : products) {
+            key.append(product.id()).append(':').append(product.version()).append(';');
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time == null ? -1 : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public record ProductVersion(Long productId, Long version, long lastModifiedMillis) {
+
+        public String eTag() {
+            return "\"" + productId + "-" + version + "\"";
+        }
+    }
+}
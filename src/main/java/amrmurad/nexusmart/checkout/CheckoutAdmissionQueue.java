@@ -0,0 +1,193 @@
+package amrmurad.nexusmart.checkout;
+
+import amrmurad.nexusmart.DTOs.orderDTOs.PlaceOrderResponse;
+import amrmurad.nexusmart.exceptions.orderExceptions.CheckoutQueueFullException;
+import amrmurad.nexusmart.exceptions.orderExceptions.CheckoutTimeoutException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Admission control for flash sales. With flash-sale mode on, checkouts are not run
+ * on the request thread but put on a bounded queue that a fixed number of virtual
+ * thread workers drain, so no more than that many checkouts compete for the hot
+ * product rows and the connection pool at once, whatever the request rate. When the
+ * queue is full the request is turned away at once with a 429 carrying the queue
+ * depth, instead of piling up behind the others. Callers wait on virtual request
+ * threads ({@code spring.threads.virtual.enabled}), so a long queue does not tie up
+ * the Tomcat worker pool.
+ *
+ * <p>With the mode off (the default) checkouts run inline as before.
+ */
+@Slf4j
+@Component
+public class CheckoutAdmissionQueue {
+
+    private final boolean enabled;
+    private final int workers;
+    private final Duration maxWait;
+
+    private final BlockingQueue<Ticket> queue;
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private final Timer waitTimer;
+    private final Counter placed;
+    private final Counter failed;
+    private final Counter rejected;
+
+    private volatile boolean running;
+
+    public CheckoutAdmissionQueue(MeterRegistry meterRegistry,
+                                  @Value("${nexusmart.checkout.flash-sale.enabled:false}") boolean enabled,
+                                  @Value("${nexusmart.checkout.flash-sale.queue-capacity:1000}") int queueCapacity,
+                                  @Value("${nexusmart.checkout.flash-sale.workers:8}") int workers,
+                                  @Value("${nexusmart.checkout.flash-sale.max-wait:30s}") Duration maxWait) {
+        this.enabled = enabled;
+        this.workers = workers;
+        this.maxWait = maxWait;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.waitTimer = meterRegistry.timer("nexusmart.checkout.admission.wait");
+        this.placed = meterRegistry.counter("nexusmart.checkout.admission.drained", "outcome", "placed");
+        this.failed = meterRegistry.counter("nexusmart.checkout.admission.drained", "outcome", "failed");
+        this.rejected = meterRegistry.counter("nexusmart.checkout.admission.rejected");
+        meterRegistry.gauge("nexusmart.checkout.admission.depth", queue, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            workerThreads.add(Thread.ofVirtual().name("checkout-admission-" + i).start(this::drain));
+        }
+        log.info("Flash-sale checkout queue started with {} workers and room for {} requests",
+                workers, queue.remainingCapacity());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        workerThreads.forEach(Thread::interrupt);
+        List<Ticket> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(ticket -> ticket.result().completeExceptionally(
+                new CheckoutQueueFullException("Checkout is shutting down, please retry", 0)));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** How long a turned-away client should wait before trying again. */
+    public Duration getRetryAfter() {
+        return maxWait;
+    }
+
+    public PlaceOrderResponse placeOrder(Supplier<PlaceOrderResponse> checkout) {
+        if (!enabled) {
+            return checkout.get();
+        }
+
+        Ticket ticket = new Ticket(checkout, new CompletableFuture<>(), new AtomicBoolean(), System.nanoTime());
+        if (!queue.offer(ticket)) {
+            rejected.increment();
+            int depth = queue.size();
+            throw new CheckoutQueueFullException("Checkout is busy with " + depth + " waiting orders, please retry", depth);
+        }
+
+        try {
+            return ticket.result().get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // a ticket no worker has taken yet is given up; one that is being worked on finishes the order
+            if (ticket.taken().compareAndSet(false, true)) {
+                // out of the queue at once, so it holds no capacity and does not count towards the depth
+                queue.remove(ticket);
+                rejected.increment();
+                int depth = queue.size();
+                throw new CheckoutQueueFullException("Checkout is busy with " + depth + " waiting orders, please retry", depth);
+            }
+            if (e instanceof InterruptedException) {
+                throw new CheckoutTimeoutException("Checkout was interrupted, check your orders before retrying",
+                        ticket.result());
+            }
+            return awaitTakenTicket(ticket);
+        }
+    }
+
+    // the worker already runs this order, so it gets one more max-wait to finish before the caller lets go
+    private PlaceOrderResponse awaitTakenTicket(Ticket ticket) {
+        try {
+            return ticket.result().get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new CheckoutTimeoutException("Checkout is taking longer than expected, check your orders before retrying",
+                    ticket.result());
+        }
+    }
+
+    private void drain() {
+        while (running) {
+            Ticket ticket;
+            try {
+                ticket = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!ticket.taken().compareAndSet(false, true)) {
+                continue;
+            }
+            waitTimer.record(System.nanoTime() - ticket.enqueuedNanos(), TimeUnit.NANOSECONDS);
+            try {
+                PlaceOrderResponse response = ticket.checkout().get();
+                placed.increment();
+                ticket.result().complete(response);
+            } catch (Throwable e) {
+                // an Error must not end the worker or leave the caller waiting on a future nobody completes
+                failed.increment();
+                ticket.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    private record Ticket(Supplier<PlaceOrderResponse> checkout,
+                          CompletableFuture<PlaceOrderResponse> result,
+                          AtomicBoolean taken,
+                          long enqueuedNanos) {
+    }
+}
@@ -0,0 +1,221 @@
+package amrmurad.nexusmart.checkout;
+
+import amrmurad.nexusmart.DTOs.orderDTOs.PlaceOrderResponse;
+import amrmurad.nexusmart.exceptions.orderExceptions.CheckoutTimeoutException;
+import amrmurad.nexusmart.exceptions.orderExceptions.IdempotencyKeyConflictException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs a checkout at most once per Idempotency-Key. Finished responses are kept in a
+ * bounded Caffeine cache for hot retries and in idempotency_keys for everything else,
+ * so a replay returns the original order and payment secret without touching the cart
+ * or Stripe. A duplicate that arrives while the first request is still running waits
+ * on its future instead of running the checkout a second time.
+ *
+ * <p>The table row is claimed before the checkout runs, which also covers duplicates
+ * sent to another instance: they get a 409 until the first request has finished. A
+ * failed checkout gives its key back, so the client can retry with the same key. A
+ * checkout the caller stopped waiting for keeps its key until it has finished, and
+ * its outcome then completes or releases the key as if the caller had still waited.
+ */
+@Slf4j
+@Component
+public class IdempotentCheckout {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private static final String CLAIM_SQL = "INSERT INTO idempotency_keys (idempotency_key, created_at) "
+            + "VALUES (?, LOCALTIMESTAMP) ON CONFLICT (idempotency_key) DO NOTHING";
+    private static final String SELECT_SQL = "SELECT order_id, payment_client_secret, payment_reference "
+            + "FROM idempotency_keys WHERE idempotency_key = ? AND order_id IS NOT NULL";
+    private static final String TAKE_OVER_SQL = "UPDATE idempotency_keys SET created_at = LOCALTIMESTAMP "
+            + "WHERE idempotency_key = ? AND order_id IS NULL AND created_at < LOCALTIMESTAMP - ? * INTERVAL '1 millisecond'";
+    private static final String COMPLETE_SQL = "UPDATE idempotency_keys SET order_id = ?, payment_client_secret = ?, "
+            + "payment_reference = ? WHERE idempotency_key = ?";
+    private static final String RELEASE_SQL = "DELETE FROM idempotency_keys WHERE idempotency_key = ? AND order_id IS NULL";
+    private static final String PURGE_SQL =
+            "DELETE FROM idempotency_keys WHERE created_at < LOCALTIMESTAMP - ? * INTERVAL '1 millisecond'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration waitTimeout;
+    private final Duration staleAfter;
+    private final Duration retention;
+
+    private final Cache<String, PlaceOrderResponse> completed;
+    private final Map<String, CompletableFuture<PlaceOrderResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotentCheckout(JdbcTemplate jdbcTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${nexusmart.idempotency.max-cached-keys:10000}") long maxCachedKeys,
+                              @Value("${nexusmart.idempotency.retention:24h}") Duration retention,
+                              @Value("${nexusmart.idempotency.wait-timeout:30s}") Duration waitTimeout,
+                              @Value("${nexusmart.idempotency.stale-after:2m}") Duration staleAfter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.waitTimeout = waitTimeout;
+        this.staleAfter = staleAfter;
+        this.retention = retention;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(maxCachedKeys)
+                .expireAfterWrite(retention)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, "idempotency-keys");
+        meterRegistry.gauge("nexusmart.checkout.idempotency.in-flight", inFlight, Map::size);
+    }
+
+    public PlaceOrderResponse placeOrder(String idempotencyKey, Integer userId, Supplier<PlaceOrderResponse> checkout) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String key = userId + ":" + idempotencyKey;
+
+        PlaceOrderResponse cached = completed.getIfPresent(key);
+        if (cached != null) {
+            log.info("Replaying order {} for idempotency key {}", cached.getOrderId(), key);
+            return cached;
+        }
+
+        CompletableFuture<PlaceOrderResponse> mine = new CompletableFuture<>();
+        CompletableFuture<PlaceOrderResponse> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return await(running, key);
+        }
+        try {
+            PlaceOrderResponse response = execute(key, checkout);
+            mine.complete(response);
+            inFlight.remove(key, mine);
+            return response;
+        } catch (CheckoutTimeoutException e) {
+            // duplicates on this instance keep waiting for the checkout that is still running,
+            // which only completes once its key has been stored or released
+            e.getCheckout().whenComplete((response, failure) -> {
+                if (failure == null) {
+                    mine.complete(response);
+                } else {
+                    mine.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure);
+                }
+                inFlight.remove(key, mine);
+            });
+            throw e;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            inFlight.remove(key, mine);
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${nexusmart.idempotency.purge-interval:1h}")
+    public void purgeExpired() {
+        try {
+            int purged = jdbcTemplate.update(PURGE_SQL, retention.toMillis());
+            if (purged > 0) {
+                log.info("Purged {} expired idempotency keys", purged);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Idempotency keys not purged, retrying on the next run: {}", e.getMessage());
+        }
+    }
+
+    private PlaceOrderResponse execute(String key, Supplier<PlaceOrderResponse> checkout) {
+        if (jdbcTemplate.update(CLAIM_SQL, key) == 0) {
+            PlaceOrderResponse stored = findCompleted(key);
+            if (stored != null) {
+                log.info("Replaying stored order {} for idempotency key {}", stored.getOrderId(), key);
+                completed.put(key, stored);
+                return stored;
+            }
+            // a claim older than stale-after belongs to a request that died without finishing
+            if (jdbcTemplate.update(TAKE_OVER_SQL, key, staleAfter.toMillis()) == 0) {
+                throw new IdempotencyKeyConflictException("A request with this Idempotency-Key is still in progress");
+            }
+        }
+
+        PlaceOrderResponse response;
+        try {
+            response = checkout.get();
+        } catch (CheckoutTimeoutException e) {
+            // releasing now would let a retry place a second order while this one may still go through
+            CompletableFuture<PlaceOrderResponse> settled = e.getCheckout().whenComplete((finished, failure) -> {
+                if (failure == null) {
+                    complete(key, finished);
+                } else {
+                    release(key);
+                }
+            });
+            throw new CheckoutTimeoutException(e.getMessage(), settled);
+        } catch (RuntimeException e) {
+            release(key);
+            throw e;
+        }
+
+        complete(key, response);
+        return response;
+    }
+
+    private void complete(String key, PlaceOrderResponse response) {
+        completed.put(key, response);
+        try {
+            jdbcTemplate.update(COMPLETE_SQL, response.getOrderId(), response.getPaymentClientSecret(),
+                    response.getPaymentReference(), key);
+        } catch (DataAccessException e) {
+            // the order exists, so answer with it; this instance still replays it from the cache
+            log.warn("Idempotency key {} not stored for order {}: {}", key, response.getOrderId(), e.getMessage());
+        }
+    }
+
+    private PlaceOrderResponse findCompleted(String key) {
+        List<PlaceOrderResponse> rows = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> PlaceOrderResponse.builder()
+                .orderId(rs.getLong("order_id"))
+                .paymentClientSecret(rs.getString("payment_client_secret"))
+                .paymentReference(rs.getString("payment_reference"))
+                .build(), key);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private PlaceOrderResponse await(CompletableFuture<PlaceOrderResponse> running, String key) {
+        log.info("Waiting for the in-flight checkout with idempotency key {}", key);
+        try {
+            return running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // the duplicate fails the same way the first request did
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyConflictException("A request with this Idempotency-Key is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyConflictException("A request with this Idempotency-Key is still in progress");
+        }
+    }
+
+    private void release(String key) {
+        try {
+            jdbcTemplate.update(RELEASE_SQL, key);
+        } catch (DataAccessException e) {
+            // the claim goes stale and is taken over after stale-after
+            log.warn("Idempotency key {} not released: {}", key, e.getMessage());
+        }
+    }
+}
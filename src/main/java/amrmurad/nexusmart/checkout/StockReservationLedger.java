@@ -0,0 +1,72 @@
+package amrmurad.nexusmart.checkout;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Stock held for orders that wait for payment. Checkout takes the stock out of the
+ * products table and writes a hold with a TTL to stock_reservations in the same
+ * transaction; the payment webhook deletes it again in the transaction that settles
+ * the order, and holds nobody settled are picked up by the expiry sweep in
+ * {@code OrderService}, which puts their stock back.
+ *
+ * <p>Every change is a single-row statement in the caller's transaction, so a rolled
+ * back checkout holds nothing and a rolled back webhook keeps its hold. Whichever of
+ * commit, release and expiry deletes the row settles the hold; concurrent callers,
+ * on this instance or another, queue on the row lock and see a row count of zero.
+ */
+@Slf4j
+@Component
+public class StockReservationLedger {
+
+    private static final String INSERT_SQL = "INSERT INTO stock_reservations (order_id, expires_at) VALUES (?, ?)";
+    private static final String DELETE_SQL = "DELETE FROM stock_reservations WHERE order_id = ?";
+    private static final String SELECT_EXPIRED_SQL =
+            "SELECT order_id FROM stock_reservations WHERE expires_at <= ? ORDER BY expires_at LIMIT ?";
+    private static final String CLAIM_EXPIRED_SQL =
+            "DELETE FROM stock_reservations WHERE order_id = ? AND expires_at <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration ttl;
+
+    public StockReservationLedger(JdbcTemplate jdbcTemplate,
+                                  @Value("${nexusmart.checkout.reservation-ttl:15m}") Duration ttl) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttl = ttl;
+    }
+
+    /** Records the hold of a new order; must run in the transaction that takes its stock. */
+    public void hold(Long orderId) {
+        jdbcTemplate.update(INSERT_SQL, orderId, Timestamp.valueOf(LocalDateTime.now().plus(ttl)));
+    }
+
+    /** Settles the hold of a paid order. False when there is none, e.g. because it already expired. */
+    public boolean commit(Long orderId) {
+        return jdbcTemplate.update(DELETE_SQL, orderId) > 0;
+    }
+
+    /** Drops the hold of an order whose payment failed. False when there is none. */
+    public boolean release(Long orderId) {
+        return jdbcTemplate.update(DELETE_SQL, orderId) > 0;
+    }
+
+    /** Orders whose hold is past its TTL, oldest first; each still has to be claimed. */
+    public List<Long> findExpired(int limit) {
+        return jdbcTemplate.queryForList(SELECT_EXPIRED_SQL, Long.class, Timestamp.valueOf(LocalDateTime.now()), limit);
+    }
+
+    /**
+     * Deletes an expired hold in the caller's transaction. True for exactly one caller; if that
+     * transaction rolls back the hold is back and the next sweep claims it again.
+     */
+    public boolean claimExpired(Long orderId) {
+        return jdbcTemplate.update(CLAIM_EXPIRED_SQL, orderId, Timestamp.valueOf(LocalDateTime.now())) > 0;
+    }
+}
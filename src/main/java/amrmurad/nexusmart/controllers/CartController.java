@@ -1,5 +1,6 @@
 package amrmurad.nexusmart.controllers;
 import amrmurad.nexusmart.DTOs.cartDTOs.AddToCartRequest;
+import amrmurad.nexusmart.DTOs.cartDTOs.CartItemOperation;
 import amrmurad.nexusmart.DTOs.cartDTOs.CartResponse;
 import amrmurad.nexusmart.DTOs.cartDTOs.UpdateCartItemRequest;
 import amrmurad.nexusmart.services.CartService;
@@ -8,6 +9,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @Slf4j
 @RestController
 @RequiredArgsConstructor
@@ -49,6 +52,13 @@ public class CartController {
         return ResponseEntity.ok(response);
     }
 
+    @PatchMapping("/{userId}")
+    public ResponseEntity<CartResponse> applyOperations(@PathVariable Long userId, @RequestBody List<CartItemOperation> operations){
+        CartResponse response = cartService.applyOperations(userId, operations);
+
+        return ResponseEntity.ok(response);
+    }
+
     @DeleteMapping("/{userId}/items/{productId}")
     public ResponseEntity<Void> removeItem(@PathVariable Long userId,@PathVariable Long productId){
          cartService.removeFromCart(userId  , productId);
@@ -1,17 +1,24 @@
 package amrmurad.nexusmart.controllers;
 
+import amrmurad.nexusmart.DTOs.orderDTOs.OrderPageResponse;
 import amrmurad.nexusmart.DTOs.orderDTOs.PlaceOrderResponse;
+import amrmurad.nexusmart.checkout.CheckoutAdmissionQueue;
+import amrmurad.nexusmart.checkout.IdempotentCheckout;
 import amrmurad.nexusmart.entities.Order;
 import amrmurad.nexusmart.enums.OrderStatus;
+import amrmurad.nexusmart.exceptions.orderExceptions.CheckoutQueueFullException;
 import amrmurad.nexusmart.services.OrderService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/orders")
@@ -21,14 +28,22 @@ import java.util.Map;
 public class OrderController {
 
     private final OrderService orderService;
+    private final IdempotentCheckout idempotentCheckout;
+    private final CheckoutAdmissionQueue admissionQueue;
 
 
     @PostMapping("/place/{userId}")
-    public ResponseEntity<PlaceOrderResponse> placeOrder(@PathVariable Integer userId) {
+    public ResponseEntity<PlaceOrderResponse> placeOrder(
+            @PathVariable Integer userId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         log.info("Placing order for user: {}", userId);
 
         try {
-            PlaceOrderResponse response = orderService.placeOrder(userId);
+            // replays are answered before queueing, so retries do not take queue slots
+            Supplier<PlaceOrderResponse> checkout = () -> admissionQueue.placeOrder(() -> orderService.placeOrder(userId));
+            PlaceOrderResponse response = idempotencyKey == null
+                    ? checkout.get()
+                    : idempotentCheckout.placeOrder(idempotencyKey, userId, checkout);
             log.info("Order placed successfully for user: {} with order ID: {}", userId, response.getOrderId());
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
         } catch (Exception e) {
@@ -38,13 +53,28 @@ public class OrderController {
     }
 
 
+    @ExceptionHandler(CheckoutQueueFullException.class)
+    public ResponseEntity<Map<String, Object>> handleCheckoutQueueFull(CheckoutQueueFullException e) {
+        long retryAfterSeconds = Math.max(1, admissionQueue.getRetryAfter().toSeconds());
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", e.getMessage());
+        body.put("queueDepth", e.getQueueDepth());
+        body.put("retryAfterSeconds", retryAfterSeconds);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(body);
+    }
+
+
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Order>> getUserOrders(@PathVariable Integer userId) {
+    public ResponseEntity<OrderPageResponse> getUserOrders(@PathVariable Integer userId,
+                                                           @RequestParam(required = false) String cursor,
+                                                           @RequestParam(required = false) Integer size) {
         log.info("Fetching orders for user: {}", userId);
 
-        List<Order> orders = orderService.getUserOrders(userId);
-        log.info("Found {} orders for user: {}", orders.size(), userId);
-        return ResponseEntity.ok(orders);
+        OrderPageResponse page = orderService.getUserOrdersPage(userId, cursor, size);
+        log.info("Found {} orders for user: {}", page.getItems().size(), userId);
+        return ResponseEntity.ok(page);
     }
 
 
@@ -1,15 +1,34 @@
 package amrmurad.nexusmart.controllers;
 
+import amrmurad.nexusmart.DTOs.productDTOs.ProductBulkUpdateRequest;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductBulkUpdateResponse;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductImportReport;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductPageResponse;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductSuggestion;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductSummary;
+import amrmurad.nexusmart.catalog.LowStockMonitor;
+import amrmurad.nexusmart.catalog.ProductVersionRegistry;
+import amrmurad.nexusmart.catalog.ProductVersionRegistry.ProductVersion;
 import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.enums.ProductSort;
+import amrmurad.nexusmart.services.ProductImportService;
 import amrmurad.nexusmart.services.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 @ControllerAdvice
 @RestController
 @RequestMapping("/api/products")
@@ -17,38 +36,76 @@ import java.util.List;
 public class ProductController {
 
     private final ProductService productService;
-
-
-    @RequestMapping
-    public ResponseEntity<List<Product>> getAllProducts(){
-        List<Product> products = productService.getAllProducts();
-        return ResponseEntity.ok(products);
+    private final ProductImportService productImportService;
+    private final LowStockMonitor lowStockMonitor;
+    private final ProductVersionRegistry productVersionRegistry;
+
+
+    @GetMapping
+    public ResponseEntity<ProductPageResponse<?>> getAllProducts(@RequestParam(required = false) String cursor,
+                                                                 @RequestParam(required = false) Integer size,
+                                                                 @RequestParam(defaultValue = "ID") ProductSort sort,
+                                                                 @RequestParam(required = false) String fields){
+        ProductPageResponse<ProductSummary> page = productService.getProductsPage(cursor, size, sort);
+        Set<String> selected = ProductSummary.parseFields(fields);
+        return ResponseEntity.ok()
+                .eTag(ProductVersionRegistry.eTagOf(page.getItems(), selected))
+                .body(new ProductPageResponse<>(selectFields(page.getItems(), selected), page.getNextCursor(), page.isHasNext()));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Product> getProduct(@PathVariable Long id){
+    public ResponseEntity<Product> getProduct(@PathVariable Long id, WebRequest request){
+        // answer revalidations from the version registry, without loading or serializing the product
+        Optional<ProductVersion> knownVersion = productVersionRegistry.find(id);
+        if (knownVersion.isPresent()
+                && request.checkNotModified(knownVersion.get().eTag(), knownVersion.get().lastModifiedMillis())){
+            return null;
+        }
+
         Product product = productService.getProductById(id);
-        return ResponseEntity.ok(product);
+        ProductVersion version = ProductVersionRegistry.of(product);
+        return ResponseEntity.ok()
+                .eTag(version.eTag())
+                .lastModified(version.lastModifiedMillis())
+                .body(product);
     }
 
+    // Ranked best match first; limit defaults to 50 and may go up to 200, there is no further page
     @GetMapping("/search")
-    public ResponseEntity<List<Product>> searchProductByName(@RequestParam String name){
-        List<Product> products = productService.searchProductByName(name);
-        return ResponseEntity.ok(products);
+    public ResponseEntity<List<?>> searchProductByName(@RequestParam String name,
+                                                       @RequestParam(required = false) Integer limit,
+                                                       @RequestParam(required = false) String fields){
+        List<ProductSummary> products = productService.searchProductByName(name, limit);
+        return withListETag(products, fields);
     }
 
-    @GetMapping(value = "/price-range")
-    public ResponseEntity<List<Product>> getProductsByPriceRange(@RequestParam BigDecimal minPrice,
-                                                                 @RequestParam BigDecimal maxPrice){
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<ProductSuggestion>> autocomplete(@RequestParam String prefix,
+                                                                @RequestParam(required = false) Integer limit){
+        return ResponseEntity.ok(productService.autocomplete(prefix, limit));
+    }
 
-        List<Product> products = productService.getProductByPriceRange(minPrice, maxPrice);
-        return ResponseEntity.ok(products);
+    @GetMapping(value = "/price-range")
+    public ResponseEntity<List<?>> getProductsByPriceRange(@RequestParam BigDecimal minPrice,
+                                                           @RequestParam BigDecimal maxPrice,
+                                                           @RequestParam(defaultValue = "0") int offset,
+                                                           @RequestParam(defaultValue = "50") int limit,
+                                                           @RequestParam(required = false) String fields){
+
+        List<ProductSummary> products = productService.getProductByPriceRange(minPrice, maxPrice, offset, limit);
+        return withListETag(products, fields);
     }
 
     @GetMapping("/low-stock")
-    public ResponseEntity<List<Product>> getLowStockProducts(@RequestParam Integer threshold){
-        List<Product> products = productService.getLowStockProducts(threshold);
-        return ResponseEntity.ok(products);
+    public ResponseEntity<List<?>> getLowStockProducts(@RequestParam Integer threshold,
+                                                       @RequestParam(required = false) String fields){
+        List<ProductSummary> products = productService.getLowStockProducts(threshold);
+        return withListETag(products, fields);
+    }
+
+    @GetMapping(value = "/low-stock/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLowStockAlerts(@RequestParam Integer threshold){
+        return lowStockMonitor.subscribe(threshold);
     }
 
     @PostMapping
@@ -57,6 +114,19 @@ public class ProductController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdProduct);
     }
 
+    @PostMapping(value = "/import", consumes = {ProductImportService.CSV, ProductImportService.NDJSON})
+    public ResponseEntity<ProductImportReport> importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                              InputStream body) throws IOException {
+        ProductImportReport report = productImportService.importProducts(body, contentType);
+        return ResponseEntity.ok(report);
+    }
+
+    @PutMapping("/bulk")
+    public ResponseEntity<ProductBulkUpdateResponse> bulkUpdate(@RequestBody List<ProductBulkUpdateRequest> updates){
+        ProductBulkUpdateResponse response = productService.bulkUpdate(updates);
+        return ResponseEntity.ok(response);
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<Product> updateProduct(@PathVariable Long id,@RequestBody Product productDetails){
         Product updatedProduct = productService.updateProduct(id, productDetails);
@@ -75,5 +145,22 @@ public class ProductController {
         return ResponseEntity.noContent().build();
     }
 
+    // Spring turns a matching If-None-Match into a 304 and skips writing the body;
+    // the fieldset is part of the ETag, each one is a different representation
+    private ResponseEntity<List<?>> withListETag(List<ProductSummary> products, String fields){
+        Set<String> selected = ProductSummary.parseFields(fields);
+        return ResponseEntity.ok()
+                .eTag(ProductVersionRegistry.eTagOf(products, selected))
+                .body(selectFields(products, selected));
+    }
+
+    // Sparse fieldset: ?fields=id,name serializes only those properties of each summary
+    private static List<?> selectFields(List<ProductSummary> products, Set<String> selected){
+        if (selected == null){
+            return products;
+        }
+        return products.stream().map(product -> product.select(selected)).toList();
+    }
+
 
 }
@@ -3,13 +3,16 @@ package amrmurad.nexusmart.entities;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 @Data
 @Entity
 @NoArgsConstructor
-@Table(name = "carts")
+@Table(name = "carts", indexes = @Index(name = "idx_carts_updated_at", columnList = "updated_at"))
 public class Cart {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -20,6 +23,14 @@ public class Cart {
     private User user;
 
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
-    private List<CartItem> items;
+    private List<CartItem> items = new ArrayList<>();
+
+    // Sum of item quantities, kept current by the statements that change cart_items
+    @Column(name = "item_count", nullable = false)
+    private Integer itemCount = 0;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
 
 }
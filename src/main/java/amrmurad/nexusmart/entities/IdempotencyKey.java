@@ -0,0 +1,33 @@
+package amrmurad.nexusmart.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Outcome of a checkout placed with an Idempotency-Key, written by IdempotentCheckout
+@Entity
+@NoArgsConstructor
+@Data
+@Table(name = "idempotency_keys",
+        indexes = @Index(name = "idx_idempotency_keys_created_at", columnList = "created_at"))
+public class IdempotencyKey {
+    // "<userId>:<header value>", so a key only has to be unique per user
+    @Id
+    @Column(name = "idempotency_key", length = 300)
+    private String key;
+
+    // Null while the first request with this key is still running
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "payment_client_secret")
+    private String paymentClientSecret;
+
+    @Column(name = "payment_reference")
+    private String paymentReference;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
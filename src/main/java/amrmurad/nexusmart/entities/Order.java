@@ -17,10 +17,12 @@ import java.util.List;
 @Entity
 @NoArgsConstructor
 @Data
-@Table(name = "Orders")
+// Serves the keyset pages of a user's order history, in the order they are read
+@Table(name = "Orders", indexes = @Index(name = "idx_orders_user_created_at_id", columnList = "user_id, created_at, id"))
 public class Order {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
     @NotNull
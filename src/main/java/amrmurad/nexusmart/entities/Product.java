@@ -7,13 +7,21 @@ import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 @Entity
 @NoArgsConstructor
 @Data
-@Table (name = "products")
+@Table (name = "products", indexes = {
+        // keyset listing: every sort order is paired with id so the cursor is unique
+        @Index(name = "idx_products_price_id", columnList = "price, id"),
+        @Index(name = "idx_products_name_id", columnList = "name, id"),
+        @Index(name = "idx_products_created_at_id", columnList = "created_at, id")
+})
 public class Product{
     @Id
     @GeneratedValue (strategy = GenerationType.IDENTITY)
@@ -33,4 +41,17 @@ public class Product{
     @Column(nullable = false, name = "stock_quantity") // Fixed typo
     @Min(value = 0, message = "Stock quantity cannot be negative")
     private Integer stockQuantity;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Bumped on every write, also by the bulk JDBC paths; drives ETags on the read endpoints
+    @Version
+    @Column(nullable = false)
+    private Long version;
 }
@@ -0,0 +1,21 @@
+package amrmurad.nexusmart.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Stock hold of an unpaid order, written and deleted by StockReservationLedger
+@Entity
+@NoArgsConstructor
+@Data
+@Table(name = "stock_reservations", indexes = @Index(name = "idx_stock_reservations_expires_at", columnList = "expires_at"))
+public class StockReservation {
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
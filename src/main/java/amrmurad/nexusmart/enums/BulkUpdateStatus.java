@@ -0,0 +1,8 @@
+package amrmurad.nexusmart.enums;
+
+public enum BulkUpdateStatus {
+    UPDATED,
+    NOT_FOUND,
+    INVALID,
+    FAILED
+}
@@ -0,0 +1,7 @@
+package amrmurad.nexusmart.enums;
+
+public enum CartOperationType {
+    ADD,
+    SET,
+    REMOVE
+}
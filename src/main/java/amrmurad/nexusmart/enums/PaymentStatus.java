@@ -4,5 +4,7 @@ public enum PaymentStatus {
     COMPLETED,
     FAILED,
     PENDING,
+    // paid after the order was cancelled, the refund is still to be issued
+    REFUND_PENDING,
     REFUNDED
 }
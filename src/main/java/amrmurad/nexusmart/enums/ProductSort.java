@@ -0,0 +1,8 @@
+package amrmurad.nexusmart.enums;
+
+public enum ProductSort {
+    ID,
+    PRICE,
+    NAME,
+    NEWEST
+}
@@ -0,0 +1,7 @@
+package amrmurad.nexusmart.enums;
+
+public enum StockAlertDirection {
+    BELOW_THRESHOLD,
+    RECOVERED,
+    REMOVED
+}
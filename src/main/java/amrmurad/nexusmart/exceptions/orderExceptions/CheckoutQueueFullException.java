@@ -0,0 +1,16 @@
+package amrmurad.nexusmart.exceptions.orderExceptions;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@Getter
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class CheckoutQueueFullException extends RuntimeException {
+    private final int queueDepth;
+
+    public CheckoutQueueFullException(String message, int queueDepth) {
+        super(message);
+        this.queueDepth = queueDepth;
+    }
+}
@@ -0,0 +1,20 @@
+package amrmurad.nexusmart.exceptions.orderExceptions;
+
+import amrmurad.nexusmart.DTOs.orderDTOs.PlaceOrderResponse;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.concurrent.CompletableFuture;
+
+@Getter
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class CheckoutTimeoutException extends RuntimeException {
+    // the checkout keeps running after the caller stopped waiting, this completes when it is done
+    private final transient CompletableFuture<PlaceOrderResponse> checkout;
+
+    public CheckoutTimeoutException(String message, CompletableFuture<PlaceOrderResponse> checkout) {
+        super(message);
+        this.checkout = checkout;
+    }
+}
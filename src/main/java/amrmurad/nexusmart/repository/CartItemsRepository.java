@@ -5,6 +5,9 @@ import amrmurad.nexusmart.entities.Cart;
 import amrmurad.nexusmart.entities.CartItem;
 import amrmurad.nexusmart.entities.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -14,6 +17,32 @@ public interface CartItemsRepository extends JpaRepository<CartItem, Long> {
 
     List<CartItem> findByCartId(Long cartId);
     Optional<CartItem> findByCartAndProduct(Cart cart, Product product);
-    void deleteByCartId(Long cartId);
-    void deleteByCart(Cart cart);
+
+    // One DELETE statement; the derived deleteBy methods load every line and remove them one by one
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id = :cartId")
+    int deleteAllByCartId(@Param("cartId") Long cartId);
+
+    // Checkout clears only the lines it ordered: a line still at (or below) the ordered quantity goes,
+    // run before subtractOrderedQuantities so a line reduced by that one is not deleted as well
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM cart_items ci USING unnest(CAST(:ids AS bigint[]), CAST(:quantities AS int[])) "
+            + "AS ordered(id, quantity) WHERE ci.id = ordered.id AND ci.quantity <= ordered.quantity",
+            nativeQuery = true)
+    int deleteOrderedLines(@Param("ids") Long[] ids, @Param("quantities") Integer[] quantities);
+
+    // A line topped up after checkout read it keeps what was added since
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE cart_items ci SET quantity = ci.quantity - ordered.quantity "
+            + "FROM unnest(CAST(:ids AS bigint[]), CAST(:quantities AS int[])) AS ordered(id, quantity) "
+            + "WHERE ci.id = ordered.id AND ci.quantity > ordered.quantity", nativeQuery = true)
+    int subtractOrderedQuantities(@Param("ids") Long[] ids, @Param("quantities") Integer[] quantities);
+
+    // One atomic statement for "add or increment"; affects no row when the user has no cart yet
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO cart_items (id, cart_id, product_id, quantity) "
+            + "SELECT nextval('cart_items_seq'), c.id, :productId, :quantity FROM carts c WHERE c.user_id = :userId "
+            + "ON CONFLICT (cart_id, product_id) DO UPDATE SET quantity = cart_items.quantity + EXCLUDED.quantity",
+            nativeQuery = true)
+    int upsertQuantity(@Param("userId") Long userId, @Param("productId") Long productId, @Param("quantity") Integer quantity);
 }
@@ -1,7 +1,11 @@
 package amrmurad.nexusmart.repository;
 
 import amrmurad.nexusmart.entities.Cart;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -12,4 +16,28 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByUserUsername(String username);
 
     Optional<Cart> findByUserId(Long userId);
+
+    // Cart, owner, lines and their products in a single select
+    @EntityGraph(attributePaths = {"user", "items", "items.product"})
+    Optional<Cart> findWithItemsByUserId(Long userId);
+
+    // Badge lookup on the unique user_id index, no items are read
+    @Query("SELECT c.itemCount FROM Cart c WHERE c.user.id = :userId")
+    Optional<Integer> findItemCountByUserId(@Param("userId") Long userId);
+
+    // Exact for concurrent adds, since each one adds only its own quantity
+    @Modifying
+    @Query(value = "UPDATE carts SET item_count = item_count + :delta, updated_at = LOCALTIMESTAMP "
+            + "WHERE user_id = :userId", nativeQuery = true)
+    int addToItemCount(@Param("userId") Long userId, @Param("delta") int delta);
+
+    @Modifying
+    @Query(value = "UPDATE carts SET item_count = 0, updated_at = LOCALTIMESTAMP WHERE id = :cartId", nativeQuery = true)
+    int resetItemCount(@Param("cartId") Long cartId);
+
+    // Flushes pending item changes first so the sum includes them
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE carts SET item_count = COALESCE((SELECT SUM(ci.quantity) FROM cart_items ci "
+            + "WHERE ci.cart_id = carts.id), 0), updated_at = LOCALTIMESTAMP WHERE user_id = :userId", nativeQuery = true)
+    int recountItems(@Param("userId") Long userId);
 }
\ No newline at end of file
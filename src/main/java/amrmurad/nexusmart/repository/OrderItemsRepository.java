@@ -1,7 +1,9 @@
 package amrmurad.nexusmart.repository;
 
+import amrmurad.nexusmart.DTOs.productDTOs.ProductSalesView;
 import amrmurad.nexusmart.entities.OrderItems;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,4 +15,8 @@ public interface OrderItemsRepository extends JpaRepository<OrderItems, Long> {
 
     // Find items by product
     List<OrderItems> findByProductId(Integer productId);
+
+    // Units sold per product, used to seed autocomplete popularity
+    @Query("SELECT oi.productId AS productId, SUM(oi.quantity) AS quantity FROM OrderItems oi GROUP BY oi.productId")
+    List<ProductSalesView> sumQuantityByProduct();
 }
@@ -2,7 +2,11 @@ package amrmurad.nexusmart.repository;
 
 import amrmurad.nexusmart.entities.Order;
 import amrmurad.nexusmart.enums.OrderStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -13,8 +17,14 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     // Find orders by user
     List<Order> findByUserId(Integer userId);
 
-    // Find orders by user ordered by creation date descending
-    List<Order> findByUserIdOrderByCreatedAtDesc(Integer userId);
+    // Keyset page of a user's orders, newest first; the pageable only carries the limit.
+    // The payment is fetched in the same query, it would otherwise be loaded once per order
+    @Query("SELECT o FROM Order o LEFT JOIN FETCH o.payment WHERE o.userId = :userId "
+            + "AND (o.createdAt, o.id) < (:createdAt, :beforeId) ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findPageByUserId(@Param("userId") Integer userId,
+                                 @Param("createdAt") LocalDateTime createdAt,
+                                 @Param("beforeId") Long beforeId,
+                                 Pageable pageable);
 
     // Find orders by status
     List<Order> findByStatus(OrderStatus status);
@@ -27,4 +37,11 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 
     // Find user orders within date range
     List<Order> findByUserIdAndCreatedAtBetween(Integer userId, LocalDateTime startDate, LocalDateTime endDate);
+
+    // Compare-and-set on the status; concurrent callers queue on the row lock and only one of them sees 1
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = :newStatus WHERE o.id = :id AND o.status = :expectedStatus")
+    int updateStatusIf(@Param("id") Long id,
+                       @Param("expectedStatus") OrderStatus expectedStatus,
+                       @Param("newStatus") OrderStatus newStatus);
 }
\ No newline at end of file
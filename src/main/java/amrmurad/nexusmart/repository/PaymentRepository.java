@@ -3,6 +3,9 @@ package amrmurad.nexusmart.repository;
 import amrmurad.nexusmart.entities.Payment;
 import amrmurad.nexusmart.enums.PaymentStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -21,5 +24,12 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     List<Payment> findByPaidAtBetween(LocalDateTime startDate, LocalDateTime endDate);
 
     Optional<Payment> findByPaymentReference(String paymentReference);
+
+    // Compare-and-set on the status, like OrderRepository.updateStatusIf
+    @Modifying
+    @Query("UPDATE Payment p SET p.paymentStatus = :newStatus WHERE p.id = :id AND p.paymentStatus = :expectedStatus")
+    int updateStatusIf(@Param("id") Long id,
+                       @Param("expectedStatus") PaymentStatus expectedStatus,
+                       @Param("newStatus") PaymentStatus newStatus);
 }
 
@@ -1,21 +1,84 @@
 package amrmurad.nexusmart.repository;
 
+import amrmurad.nexusmart.DTOs.productDTOs.ProductNameView;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductPriceView;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductStockView;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductSummary;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductVersionView;
 import amrmurad.nexusmart.entities.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
-    List<Product> findByNameContainingIgnoreCase(String name);
-    List<Product> findByPriceBetween(BigDecimal min, BigDecimal max);
+
+    String SELECT_SUMMARY = "SELECT new amrmurad.nexusmart.DTOs.productDTOs.ProductSummary("
+            + "p.id, p.name, p.price, p.stockQuantity, p.createdAt, p.version) FROM Product p ";
 
     Optional<Product> findById(Long id);
 
-    List<Product> findByStockQuantityLessThan(Integer quantity);
     boolean existsByNameIgnoreCase(String name);
 
+    // Set-based variant of existsByNameIgnoreCase, names must already be lower-cased
+    @Query("SELECT LOWER(p.name) FROM Product p WHERE LOWER(p.name) IN :names")
+    List<String> findExistingLowerCaseNames(@Param("names") Collection<String> names);
+
+    List<Product> findByNameIn(Collection<String> names);
+
+    @Query("SELECT p.id AS id, p.name AS name FROM Product p")
+    List<ProductNameView> findAllNames();
+
+    @Query("SELECT p.id AS id, p.price AS price FROM Product p")
+    List<ProductPriceView> findAllPrices();
+
+    @Query("SELECT p.id AS id, p.stockQuantity AS stockQuantity, p.version AS version FROM Product p "
+            + "WHERE p.stockQuantity < :ceiling")
+    List<ProductStockView> findStockBelow(@Param("ceiling") Integer ceiling);
+
+    @Query("SELECT p.id AS id, p.version AS version, p.updatedAt AS updatedAt FROM Product p")
+    List<ProductVersionView> findAllVersions();
+
+    // Keyset pages: the pageable only carries the limit, ordering is fixed by each query
+    @Query(SELECT_SUMMARY + "WHERE p.id > :afterId ORDER BY p.id ASC")
+    List<ProductSummary> findPageById(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(SELECT_SUMMARY + "WHERE (p.price, p.id) > (:price, :afterId) ORDER BY p.price ASC, p.id ASC")
+    List<ProductSummary> findPageByPrice(@Param("price") BigDecimal price, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(SELECT_SUMMARY + "WHERE (p.name, p.id) > (:name, :afterId) ORDER BY p.name ASC, p.id ASC")
+    List<ProductSummary> findPageByName(@Param("name") String name, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(SELECT_SUMMARY + "WHERE (p.createdAt, p.id) < (:createdAt, :beforeId) ORDER BY p.createdAt DESC, p.id DESC")
+    List<ProductSummary> findPageByNewest(@Param("createdAt") LocalDateTime createdAt, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    // Full rows in id order, for the catalog snapshot writer
+    @Query("SELECT p FROM Product p WHERE p.id > :afterId ORDER BY p.id ASC")
+    List<Product> findBatchAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Summary variants of the list lookups, the description column is never read
+    @Query(SELECT_SUMMARY + "WHERE p.id IN :ids")
+    List<ProductSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Fallback while the name index is loading, capped like the indexed search
+    @Query(SELECT_SUMMARY + "WHERE LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%')) "
+            + "ORDER BY p.name ASC, p.id ASC LIMIT :limit")
+    List<ProductSummary> findSummariesByNameContaining(@Param("name") String name, @Param("limit") int limit);
+
+    // Fallback while the price index is loading; the database skips the offset rows, they are never fetched
+    @Query(SELECT_SUMMARY + "WHERE p.price BETWEEN :min AND :max ORDER BY p.price ASC, p.id ASC "
+            + "LIMIT :limit OFFSET :offset")
+    List<ProductSummary> findSummariesByPriceBetween(@Param("min") BigDecimal min, @Param("max") BigDecimal max,
+                                                     @Param("offset") int offset, @Param("limit") int limit);
+
+    @Query(SELECT_SUMMARY + "WHERE p.stockQuantity < :threshold")
+    List<ProductSummary> findSummariesByStockBelow(@Param("threshold") Integer threshold);
 
 }
@@ -1,10 +1,15 @@
 package amrmurad.nexusmart.services;
 
 import amrmurad.nexusmart.DTOs.cartDTOs.AddToCartRequest;
+import amrmurad.nexusmart.DTOs.cartDTOs.CartItemOperation;
 import amrmurad.nexusmart.DTOs.cartDTOs.CartItemResponse;
 import amrmurad.nexusmart.DTOs.cartDTOs.CartResponse;
 import amrmurad.nexusmart.DTOs.cartDTOs.UpdateCartItemRequest;
+import amrmurad.nexusmart.cart.CartLines;
+import amrmurad.nexusmart.cart.WriteBehindCartStore;
+import amrmurad.nexusmart.catalog.ProductCache;
 import amrmurad.nexusmart.entities.*;
+import amrmurad.nexusmart.enums.CartOperationType;
 import amrmurad.nexusmart.exceptions.ProductNotFoundException;
 import amrmurad.nexusmart.repository.CartItemsRepository;
 import amrmurad.nexusmart.repository.CartRepository;
@@ -17,7 +22,15 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,11 +43,17 @@ public class CartService {
     private final CartItemsRepository cartItemRepository;
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
+    private final ProductCache productCache;
+    private final WriteBehindCartStore cartStore;
 
     public CartResponse getCartByUserId(Long userId) {
         log.info("Getting cart for user id: {}", userId);
 
-        Cart cart = cartRepository.findByUserId(userId)
+        if (cartStore.isEnabled()) {
+            return convertToCartResponse(cartStore.get(userId, () -> getOrCreateCartWithItems(userId)));
+        }
+
+        Cart cart = cartRepository.findWithItemsByUserId(userId)
                 .map(existingCart -> {
                     log.debug("found existing cart with id: {}, for user with id: {}", existingCart.getId(), userId);
                     return existingCart;
@@ -65,36 +84,30 @@ public class CartService {
 
         log.info("adding to cart - user: {}, product: {}, quantity: {}", userId, request.getProductId(), request.getQuantity());
 
-        Cart cart = getOrCreateCart(userId);
-        Product product = productRepository.findById(request.getProductId())
+        Product product = productCache.findById(request.getProductId())
                 .orElseThrow(() -> {
                     log.error("product not found with id: {}", request.getProductId());
                     return new ProductNotFoundException(request.getProductId());
                 });
 
-        cartItemRepository.findByCartAndProduct(cart, product)
-                .ifPresentOrElse(existingItem -> {
-                    int oldQuantity = existingItem.getQuantity();
-                    int newQuantity = oldQuantity + request.getQuantity();
-                    existingItem.setQuantity(newQuantity);
-                    cartItemRepository.save(existingItem);
-
+        if (cartStore.isEnabled()) {
+            return convertToCartResponse(cartStore.add(userId, product.getId(), request.getQuantity(),
+                    () -> getOrCreateCartWithItems(userId)));
+        }
 
-                    log.info("Updated existing cart item - ID: {}, Old quantity: {}, New quantity: {}",
-                            existingItem.getId(), oldQuantity, newQuantity);
-                },
-                        () -> {
-                    CartItem newItem = new CartItem();
-                    newItem.setCart(cart);
-                    newItem.setProduct(product);
-                    newItem.setQuantity(request.getQuantity());
-
-                    CartItem savedItem = cartItemRepository.save(newItem);
-                            log.info("Created new cart item - ID: {}, Product: {}, Quantity: {}",
-                                    savedItem.getId(), request.getProductId(), request.getQuantity());
-                            }
-                        );
+        // insert-or-increment in one statement, so double clicks and parallel tabs cannot lose an update
+        int affected = cartItemRepository.upsertQuantity(userId, product.getId(), request.getQuantity());
+        if (affected == 0) {
+            log.info("cart not found with user id: {}, create new cart", userId);
+            createCartForUser(userId);
+            cartItemRepository.upsertQuantity(userId, product.getId(), request.getQuantity());
+        }
+        cartRepository.addToItemCount(userId, request.getQuantity());
+        log.info("Upserted cart item - User: {}, Product: {}, Added quantity: {}",
+                userId, request.getProductId(), request.getQuantity());
 
+        // the upsert cleared the persistence context, read the cart back with its lines for the response
+        Cart cart = getOrCreateCartWithItems(userId);
         return convertToCartResponse(cart);
     }
 
@@ -103,16 +116,24 @@ public class CartService {
     public void removeFromCart(Long userId, Long productId){
         log.info("Remove form cart - user: {}, product: {}", userId, productId);
 
-        Cart cart = getOrCreateCart(userId);
-        Product product = productRepository.findById(productId)
+        Product product = productCache.findById(productId)
                 .orElseThrow(() -> {
                     log.error("product not found ID: {}", productId);
                     return new ProductNotFoundException(productId);
                 });
 
-        cartItemRepository.findByCartAndProduct(cart, product)
+        if (cartStore.isEnabled()) {
+            cartStore.remove(userId, product.getId(), () -> getOrCreateCartWithItems(userId));
+            return;
+        }
+
+        Cart cart = getOrCreateCartWithItems(userId);
+
+        findItem(cart, product.getId())
                 .ifPresentOrElse(cartItem -> {
-                    cartItemRepository.deleteByCart(cart);
+                    // orphanRemoval deletes just this line
+                    cart.getItems().remove(cartItem);
+                    cartRepository.recountItems(userId);
                     log.info("Successfully removed cart item - ID: {}, Product: {}",
                             cartItem.getId(), productId);
                 },
@@ -128,22 +149,31 @@ public class CartService {
         log.info("Updating quantity - User: {}, Product: {}, New quantity: {}",
                 userId, request.getProductId(), request.getQuantity());
 
-        Cart cart = getOrCreateCart(userId);
-        Product product = productRepository.findById(request.getProductId())
+        Product product = productCache.findById(request.getProductId())
                 .orElseThrow(() -> {
                     log.error("Product not found with ID: {}", request.getProductId());
                     return new ProductNotFoundException(request.getProductId());
                 });
 
+        if (cartStore.isEnabled()) {
+            if (!cartStore.get(userId, () -> getOrCreateCartWithItems(userId)).contains(product.getId())) {
+                log.error("Cart item not found - User: {}, Product: {}", userId, request.getProductId());
+                throw new RuntimeException("Item not found in cart");
+            }
+            return convertToCartResponse(cartStore.setQuantity(userId, product.getId(), request.getQuantity(),
+                    () -> getOrCreateCartWithItems(userId)));
+        }
 
-        CartItem cartItem = cartItemRepository.findByCartAndProduct(cart, product)
+        Cart cart = getOrCreateCartWithItems(userId);
+
+        CartItem cartItem = findItem(cart, product.getId())
                 .orElseThrow(() -> {
                     log.error("Cart item not found - User: {}, Product: {}", userId, request.getProductId());
                     return new RuntimeException("Item not found in cart");
                 });
 
         if (request.getQuantity() <= 0) {
-            cartItemRepository.delete(cartItem);
+            cart.getItems().remove(cartItem);
             log.info("Deleted cart item due to zero/negative quantity - ID: {}", cartItem.getId());
         } else {
             int oldQuantity = cartItem.getQuantity();
@@ -153,31 +183,91 @@ public class CartService {
             log.info("Updated cart item quantity - ID: {}, Old: {}, New: {}",
                     cartItem.getId(), oldQuantity, request.getQuantity());
         }
+        cartRepository.recountItems(userId);
 
         return convertToCartResponse(cart);
     }
 
 
+    /**
+     * Applies a list of ADD/SET/REMOVE operations in request order within one transaction.
+     * The products are loaded in one batch and the cart is read and written once.
+     */
+    @Transactional
+    public CartResponse applyOperations(Long userId, List<CartItemOperation> operations) {
+        validateOperations(operations);
+        log.info("Applying {} cart operations - user: {}", operations.size(), userId);
+
+        Set<Long> productIds = operations.stream()
+                .map(CartItemOperation::getProductId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        for (Long productId : productIds) {
+            if (!products.containsKey(productId)) {
+                log.error("product not found with id: {}", productId);
+                throw new ProductNotFoundException(productId);
+            }
+        }
+
+        if (cartStore.isEnabled()) {
+            return convertToCartResponse(cartStore.replace(userId,
+                    lines -> toCartLines(lines.cartId(), foldOperations(quantitiesOf(lines), operations)),
+                    () -> getOrCreateCartWithItems(userId)));
+        }
+
+        Cart cart = getOrCreateCartWithItems(userId);
+        Map<Long, Integer> current = new LinkedHashMap<>();
+        cart.getItems().forEach(item -> current.put(item.getProduct().getId(), item.getQuantity()));
+        Map<Long, Integer> target = foldOperations(current, operations);
+
+        // existing lines are changed in place rather than deleted and re-inserted, so a REMOVE followed
+        // by an ADD of the same product cannot trip the (cart, product) unique key at flush
+        cart.getItems().removeIf(item -> !target.containsKey(item.getProduct().getId()));
+        cart.getItems().forEach(item -> item.setQuantity(target.get(item.getProduct().getId())));
+        target.forEach((productId, quantity) -> {
+            if (!current.containsKey(productId)) {
+                CartItem item = new CartItem();
+                item.setCart(cart);
+                item.setProduct(products.get(productId));
+                item.setQuantity(quantity);
+                cart.getItems().add(item);
+            }
+        });
+        cartRepository.recountItems(userId);
+
+        log.info("Applied {} cart operations - user: {}, lines: {}", operations.size(), userId, target.size());
+        return convertToCartResponse(cart);
+    }
+
+    @Transactional
     public void clearCart(Long userId) {
         log.info("Clearing cart for user: {}", userId);
 
-        Cart cart = getOrCreateCart(userId);
-        List<CartItem> items = cartItemRepository.findByCartId(cart.getId());
-        int itemCount = items.size();
+        if (cartStore.isEnabled()) {
+            cartStore.clear(userId, () -> getOrCreateCartWithItems(userId));
+            return;
+        }
 
-        cartItemRepository.deleteByCart(cart);
+        Cart cart = getOrCreateCart(userId);
+        int itemCount = cartItemRepository.deleteAllByCartId(cart.getId());
+        cartRepository.resetItemCount(cart.getId());
 
         log.info("Successfully cleared cart for user: {}, deleted {} items", userId, itemCount);
     }
 
+    // Reads the maintained count, never the items, and never creates a cart
     public int getCartItemCount(Long userId) {
         log.debug("Getting cart item count for user: {}", userId);
 
-        Cart cart = getOrCreateCart(userId);
-        List<CartItem> items = cartItemRepository.findByCartId(cart.getId());
-        int totalCount = items.stream()
-                .mapToInt(CartItem::getQuantity)
-                .sum();
+        if (cartStore.isEnabled()) {
+            OptionalInt inMemory = cartStore.findTotalQuantity(userId);
+            if (inMemory.isPresent()) {
+                return inMemory.getAsInt();
+            }
+        }
+
+        int totalCount = cartRepository.findItemCountByUserId(userId).orElse(0);
 
         log.debug("Cart item count for user {}: {}", userId, totalCount);
         return totalCount;
@@ -188,8 +278,74 @@ public class CartService {
                 .orElseGet(() -> createCartForUser(userId));
     }
 
+    private Cart getOrCreateCartWithItems(Long userId) {
+        return cartRepository.findWithItemsByUserId(userId)
+                .orElseGet(() -> createCartForUser(userId));
+    }
+
+    private Optional<CartItem> findItem(Cart cart, Long productId) {
+        return cart.getItems().stream()
+                .filter(item -> item.getProduct().getId().equals(productId))
+                .findFirst();
+    }
+
+    private void validateOperations(List<CartItemOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new IllegalArgumentException("At least one cart operation is required");
+        }
+        for (CartItemOperation operation : operations) {
+            if (operation.getOp() == null || operation.getProductId() == null) {
+                throw new IllegalArgumentException("Cart operation needs an op and a productId");
+            }
+            if (operation.getOp() == CartOperationType.ADD
+                    && (operation.getQuantity() == null || operation.getQuantity() < 1)) {
+                throw new IllegalArgumentException("ADD needs a quantity of at least 1");
+            }
+            if (operation.getOp() == CartOperationType.SET && operation.getQuantity() == null) {
+                throw new IllegalArgumentException("SET needs a quantity");
+            }
+        }
+    }
+
+    // Final quantity per product after the operations, lines that drop to zero are left out
+    private static Map<Long, Integer> foldOperations(Map<Long, Integer> quantities, List<CartItemOperation> operations) {
+        Map<Long, Integer> result = new LinkedHashMap<>(quantities);
+        for (CartItemOperation operation : operations) {
+            switch (operation.getOp()) {
+                case ADD -> result.merge(operation.getProductId(), operation.getQuantity(), Integer::sum);
+                case SET -> {
+                    if (operation.getQuantity() <= 0) {
+                        result.remove(operation.getProductId());
+                    } else {
+                        result.put(operation.getProductId(), operation.getQuantity());
+                    }
+                }
+                case REMOVE -> result.remove(operation.getProductId());
+            }
+        }
+        return result;
+    }
+
+    private static Map<Long, Integer> quantitiesOf(CartLines cart) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (long line : cart.lines()) {
+            quantities.put(CartLines.productId(line), CartLines.quantity(line));
+        }
+        return quantities;
+    }
+
+    private static CartLines toCartLines(Long cartId, Map<Long, Integer> quantities) {
+        long[] lines = new long[quantities.size()];
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            lines[i++] = CartLines.pack(entry.getKey(), entry.getValue());
+        }
+        return new CartLines(cartId, lines);
+    }
+
+    // Items and products were fetched together with the cart, so building the response runs no queries
     private CartResponse convertToCartResponse(Cart cart) {
-        List<CartItem> items = cartItemRepository.findByCartId(cart.getId());
+        List<CartItem> items = cart.getItems();
 
         List<CartItemResponse> itemResponses = items.stream()
                 .map(this::convertToCartItemResponse)
@@ -208,6 +364,31 @@ public class CartService {
         return new CartResponse(cart.getId(), itemResponses, totalAmount, totalItems);
     }
 
+    // In-memory carts only hold ids and quantities, names and prices come from the product cache
+    private CartResponse convertToCartResponse(CartLines cart) {
+        List<CartItemResponse> itemResponses = new ArrayList<>();
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        int totalItems = 0;
+
+        for (long line : cart.lines()) {
+            Optional<Product> product = productCache.findById(CartLines.productId(line));
+            if (product.isEmpty()) {
+                continue; // deleted since it was added, the flush drops the line as well
+            }
+            int quantity = CartLines.quantity(line);
+            itemResponses.add(CartItemResponse.builder()
+                    .productId(product.get().getId())
+                    .productName(product.get().getName())
+                    .price(product.get().getPrice())
+                    .quantity(quantity)
+                    .build());
+            totalAmount = totalAmount.add(product.get().getPrice().multiply(new BigDecimal(quantity)));
+            totalItems += quantity;
+        }
+
+        return new CartResponse(cart.cartId(), itemResponses, totalAmount, totalItems);
+    }
+
     private CartItemResponse convertToCartItemResponse(CartItem cartItem) {
         return CartItemResponse.builder()
                 .productId(cartItem.getProduct().getId())
@@ -0,0 +1,154 @@
+package amrmurad.nexusmart.services;
+
+import amrmurad.nexusmart.catalog.ProductChangedEvent;
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.exceptions.ProductNotFoundException;
+import amrmurad.nexusmart.exceptions.orderExceptions.InsufficientStockException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stock changes made by checkout and cancellation. Availability is decided by the
+ * database: each line is a conditional UPDATE and its row count says whether the
+ * stock was there, so concurrent checkouts of the same product cannot oversell and
+ * no row is locked beyond its own statement. All lines go out as one JDBC batch in
+ * product id order, which keeps two multi-line checkouts from deadlocking.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class InventoryService {
+
+    private static final String DECREMENT_SQL = "UPDATE products SET stock_quantity = stock_quantity - ?, "
+            + "version = version + 1, updated_at = LOCALTIMESTAMP WHERE id = ? AND stock_quantity >= ?";
+    private static final String RESTORE_SQL = "UPDATE products SET stock_quantity = stock_quantity + ?, "
+            + "version = version + 1, updated_at = LOCALTIMESTAMP WHERE id = ?";
+    private static final String SELECT_PRODUCTS_SQL = "SELECT id, name, description, price, stock_quantity, "
+            + "created_at, updated_at, version FROM products WHERE id = ANY (?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Takes the given quantities (product id to quantity) off stock, all or nothing.
+     * Lines that did go through are rolled back with the surrounding transaction
+     * when any other line is short.
+     */
+    public void decrement(Map<Long, Integer> quantities) {
+        List<Map.Entry<Long, Integer>> lines = List.copyOf(new TreeMap<>(quantities).entrySet());
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        int[] rowCounts = decrementLines(lines);
+
+        List<Long> shortIds = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (rowCounts[i] == 0) {
+                shortIds.add(lines.get(i).getKey());
+            }
+        }
+        if (!shortIds.isEmpty()) {
+            log.info("Stock decrement refused, insufficient stock for products: {}", shortIds);
+            throw new InsufficientStockException("Insufficient stock for products: " + shortIds);
+        }
+
+        publishChanged(lines);
+    }
+
+    /**
+     * Same as {@link #decrement} but reports a shortfall with false instead of an exception,
+     * which would mark the caller's transaction rollback-only. The lines that did go through
+     * are put back before it returns, so the caller can still commit its other changes.
+     */
+    public boolean tryDecrement(Map<Long, Integer> quantities) {
+        List<Map.Entry<Long, Integer>> lines = List.copyOf(new TreeMap<>(quantities).entrySet());
+        if (lines.isEmpty()) {
+            return true;
+        }
+
+        int[] rowCounts = decrementLines(lines);
+
+        List<Map.Entry<Long, Integer>> taken = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (rowCounts[i] > 0) {
+                taken.add(lines.get(i));
+            }
+        }
+        if (taken.size() < lines.size()) {
+            log.info("Stock decrement refused, putting back the {} lines that went through", taken.size());
+            restoreLines(taken);
+            return false;
+        }
+
+        publishChanged(lines);
+        return true;
+    }
+
+    /** Puts the given quantities back on stock, e.g. after a failed payment. */
+    public void restore(Map<Long, Integer> quantities) {
+        List<Map.Entry<Long, Integer>> lines = List.copyOf(new TreeMap<>(quantities).entrySet());
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        int[] rowCounts = restoreLines(lines);
+
+        for (int i = 0; i < lines.size(); i++) {
+            if (rowCounts[i] == 0) {
+                throw new ProductNotFoundException(lines.get(i).getKey());
+            }
+        }
+
+        publishChanged(lines);
+    }
+
+    private int[] decrementLines(List<Map.Entry<Long, Integer>> lines) {
+        return jdbcTemplate.batchUpdate(DECREMENT_SQL, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setLong(2, line.getKey());
+            ps.setInt(3, line.getValue());
+        })[0];
+    }
+
+    private int[] restoreLines(List<Map.Entry<Long, Integer>> lines) {
+        if (lines.isEmpty()) {
+            return new int[0];
+        }
+        return jdbcTemplate.batchUpdate(RESTORE_SQL, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setLong(2, line.getKey());
+        })[0];
+    }
+
+    // Managed Product instances in the caller's persistence context are stale now, so the events carry fresh rows
+    private void publishChanged(List<Map.Entry<Long, Integer>> lines) {
+        Long[] ids = lines.stream().map(Map.Entry::getKey).toArray(Long[]::new);
+        jdbcTemplate.query(SELECT_PRODUCTS_SQL,
+                        ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)),
+                        (rs, rowNum) -> {
+                            Product product = new Product();
+                            product.setId(rs.getLong("id"));
+                            product.setName(rs.getString("name"));
+                            product.setDescription(rs.getString("description"));
+                            product.setPrice(rs.getBigDecimal("price"));
+                            product.setStockQuantity(rs.getInt("stock_quantity"));
+                            product.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+                            product.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+                            product.setVersion(rs.getLong("version"));
+                            return product;
+                        })
+                .forEach(product -> eventPublisher.publishEvent(ProductChangedEvent.stockChanged(product)));
+    }
+}
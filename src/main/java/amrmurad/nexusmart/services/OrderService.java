@@ -1,7 +1,11 @@
 package amrmurad.nexusmart.services;
 
 import amrmurad.nexusmart.DTOs.orderDTOs.OrderCalculationDTO;
+import amrmurad.nexusmart.DTOs.orderDTOs.OrderCursor;
+import amrmurad.nexusmart.DTOs.orderDTOs.OrderPageResponse;
 import amrmurad.nexusmart.DTOs.orderDTOs.PlaceOrderResponse;
+import amrmurad.nexusmart.cart.WriteBehindCartStore;
+import amrmurad.nexusmart.checkout.StockReservationLedger;
 import amrmurad.nexusmart.entities.*;
 import amrmurad.nexusmart.enums.OrderStatus;
 import amrmurad.nexusmart.enums.PaymentMethod;
@@ -13,15 +17,24 @@ import amrmurad.nexusmart.exceptions.orderExceptions.OrderNotFoundException;
 import amrmurad.nexusmart.exceptions.orderExceptions.PaymentNotFoundException;
 import amrmurad.nexusmart.repository.*;
 import com.stripe.model.PaymentIntent;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -29,48 +42,60 @@ import java.util.List;
 @Transactional(readOnly = true)
 public class OrderService {
 
+    private static final String TRANSACTION_TIMER = "nexusmart.checkout.transaction";
+    private static final String PAYMENT_INTENT_TIMER = "nexusmart.checkout.payment-intent";
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int EXPIRED_HOLDS_PER_SWEEP = 500;
+
     private final OrderRepository orderRepository;
     private final OrderItemsRepository orderItemsRepository;
     private final PaymentRepository paymentRepository;
     private final CartRepository cartRepository;
     private final CartItemsRepository cartItemsRepository;
-    private final ProductRepository productRepository;
-    private final UserRepository userRepository;
     private final StripePaymentService stripePaymentService;
+    private final InventoryService inventoryService;
+    private final StockReservationLedger reservationLedger;
+    private final WriteBehindCartStore cartStore;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
 
 
-    @Transactional
+    // Only the local writes run in a transaction; no connection or row lock is held during the Stripe round trip
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public PlaceOrderResponse placeOrder(Integer userId) {
-        // 1. Validate cart and calculate order
-        OrderCalculationDTO calculation = validateAndCalculateOrder(userId);
-        if (!calculation.isAllItemsInStock()) {
-            throw new InsufficientStockException("Insufficient stock: " + String.join(", ", calculation.getStockIssues()));
+        // 0. With the in-memory cart store, write the user's latest cart first so checkout reads it
+        cartStore.flush(userId.longValue());
+
+        // 1. Order, items and stock in one short local transaction, from one read of the cart
+        PendingCheckout checkout = meterRegistry.timer(TRANSACTION_TIMER, "phase", "reserve")
+                .record(() -> transactionTemplate.execute(status -> createOrderWithStock(userId)));
+        Order order = checkout.order();
+
+        // 2. Create Stripe Payment Intent, the order is cancelled and its stock goes back if that fails
+        PaymentIntent paymentIntent;
+        try {
+            paymentIntent = meterRegistry.timer(PAYMENT_INTENT_TIMER).record(() -> stripePaymentService.createPaymentIntent(
+                    order.getTotalAmount().multiply(new BigDecimal("100")).longValue(), // Convert to cents
+                    "usd", // or get from config
+                    order.getId().toString(),
+                    PaymentMethod.CREDIT_CARD
+            ));
+        } catch (RuntimeException e) {
+            compensateFailedPaymentIntent(order.getId(), e);
+            throw e;
         }
 
-        // 2. Get cart items
-        List<CartItem> cartItems = getCartItems(userId);
-
-        // 3. Create Order record
-        Order order = createOrderRecord(userId, calculation.getTotalAmount());
-
-        // 4. Create OrderItems
-        createOrderItems(order, cartItems);
-
-        // 5. Create Stripe Payment Intent
-        PaymentIntent paymentIntent = stripePaymentService.createPaymentIntent(
-                calculation.getTotalAmount().multiply(new BigDecimal("100")).longValue(), // Convert to cents
-                "usd", // or get from config
-                order.getId().toString(),
-                PaymentMethod.CREDIT_CARD
-        );
-
-        // 6. Decrement product stock
-        decrementProductStock(cartItems);
-
-        // 7. Clear user cart
-        clearUserCart(userId);
+        // 3. Clear user cart
+        try {
+            meterRegistry.timer(TRANSACTION_TIMER, "phase", "clear-cart")
+                    .record(() -> transactionTemplate.executeWithoutResult(status -> clearUserCart(userId, checkout)));
+        } catch (DataAccessException | TransactionException e) {
+            // the order stands, a cart that still shows its items is not worth failing the checkout over
+            log.warn("Order {} placed but the cart of user {} was not cleared: {}", order.getId(), userId, e.getMessage());
+        }
 
-        // 8. Extract client secret and return response
+        // 4. Extract client secret and return response
         String clientSecret = paymentIntent.getClientSecret();
 
         PlaceOrderResponse response = PlaceOrderResponse.builder()
@@ -96,6 +121,11 @@ public class OrderService {
         orderRepository.save(order);
     }
 
+    /**
+     * Confirms the order of a successful payment. A payment that lands after its hold expired
+     * takes the stock again; if it is gone by now the payment is marked for refund instead,
+     * so the webhook still commits and Stripe stops retrying it.
+     */
     @Transactional
     public void handlePaymentSuccess(String paymentReference) {
         if (paymentReference == null || paymentReference.trim().isEmpty()) {
@@ -103,13 +133,33 @@ public class OrderService {
         }
 
         Payment payment = findPaymentByReference(paymentReference);
-        payment.setPaymentStatus(PaymentStatus.COMPLETED);
+        if (payment.getPaymentStatus() == PaymentStatus.REFUND_PENDING
+                || payment.getPaymentStatus() == PaymentStatus.REFUNDED) {
+            return; // a retried webhook for a payment that is already being refunded
+        }
+
+        Long orderId = payment.getOrderId().longValue();
+        PaymentStatus paymentStatus = PaymentStatus.COMPLETED;
+        reservationLedger.commit(orderId);
+        if (orderRepository.updateStatusIf(orderId, OrderStatus.PENDING, OrderStatus.CONFIRMED) == 0) {
+            Order order = findOrderById(orderId);
+            if (order.getStatus() == OrderStatus.CANCELLED) {
+                // the hold expired before the payment came through and its stock went back, take it again
+                if (inventoryService.tryDecrement(orderQuantities(orderId))) {
+                    log.warn("Payment {} arrived for expired order {}, took its stock again", paymentReference, orderId);
+                    order.setStatus(OrderStatus.CONFIRMED);
+                    orderRepository.save(order);
+                } else {
+                    log.warn("Payment {} arrived for expired order {} whose stock is sold, refunding it",
+                            paymentReference, orderId);
+                    paymentStatus = PaymentStatus.REFUND_PENDING;
+                }
+            }
+        }
+
+        payment.setPaymentStatus(paymentStatus);
         payment.setPaidAt(LocalDateTime.now());
         paymentRepository.save(payment);
-
-        Order order = findOrderById(payment.getOrderId().longValue());
-        order.setStatus(OrderStatus.CONFIRMED);
-        orderRepository.save(order);
     }
 
     @Transactional
@@ -123,23 +173,71 @@ public class OrderService {
         paymentRepository.save(payment);
 
         Order order = findOrderById(payment.getOrderId().longValue());
-        order.setStatus(OrderStatus.CANCELLED);
-        orderRepository.save(order);
+        reservationLedger.release(order.getId());
 
-        // Restore product stock
-        restoreProductStock(order);
+        // Orders placed without a hold take the same path, their stock comes back from the order items
+        cancelPendingOrder(order.getId());
+    }
+
+    /**
+     * Cancels unpaid orders whose hold expired, each in its own short transaction, then
+     * cancels their payment intent so a late payment is no longer possible. If the
+     * cancellation fails the payment can still land and is refunded by {@link #refundLatePayments()}.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Scheduled(fixedDelayString = "${nexusmart.checkout.reservation-sweep-interval:30s}")
+    public void releaseExpiredReservations() {
+        for (Long orderId : reservationLedger.findExpired(EXPIRED_HOLDS_PER_SWEEP)) {
+            Boolean cancelled;
+            try {
+                cancelled = transactionTemplate.execute(status ->
+                        reservationLedger.claimExpired(orderId) && cancelPendingOrder(orderId));
+            } catch (DataAccessException | TransactionException e) {
+                log.warn("Could not release stock held by order {}, retrying: {}", orderId, e.getMessage());
+                continue;
+            }
+            if (Boolean.TRUE.equals(cancelled)) {
+                log.info("Released stock held by unpaid order {}", orderId);
+                cancelPaymentIntent(orderId);
+            }
+        }
     }
 
-    public List<Order> getUserOrders(Integer userId) {
+    // Payments marked by handlePaymentSuccess; the refund is keyed by the intent, so retries are safe
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Scheduled(fixedDelayString = "${nexusmart.checkout.reservation-sweep-interval:30s}")
+    public void refundLatePayments() {
+        for (Payment payment : paymentRepository.findByPaymentStatus(PaymentStatus.REFUND_PENDING)) {
+            try {
+                stripePaymentService.refundPayment(payment.getPaymentReference());
+                transactionTemplate.execute(status -> paymentRepository.updateStatusIf(
+                        payment.getId(), PaymentStatus.REFUND_PENDING, PaymentStatus.REFUNDED));
+                log.info("Refunded payment {} of cancelled order {}", payment.getPaymentReference(), payment.getOrderId());
+            } catch (RuntimeException e) {
+                log.warn("Refund of payment {} failed, retrying: {}", payment.getPaymentReference(), e.getMessage());
+            }
+        }
+    }
+
+    // No check that the user exists: an unknown user simply has no orders
+    public OrderPageResponse getUserOrdersPage(Integer userId, String cursor, Integer size) {
         if (userId == null) {
             throw new IllegalArgumentException("User ID cannot be null");
         }
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        OrderCursor position = cursor == null || cursor.isBlank() ? OrderCursor.first() : OrderCursor.decode(cursor);
 
-        // Verify user exists
-        userRepository.findById(userId.longValue())
-                .orElseThrow(() -> new UserNotFoundException("User not found with ID: " + userId));
+        // fetch one extra row to know whether another page exists without a count query
+        List<Order> rows = orderRepository.findPageByUserId(userId, position.createdAt(), position.lastId(),
+                PageRequest.ofSize(pageSize + 1));
+        boolean hasNext = rows.size() > pageSize;
+        List<Order> items = hasNext ? rows.subList(0, pageSize) : rows;
 
-        return orderRepository.findByUserIdOrderByCreatedAtDesc(userId);
+        String nextCursor = hasNext ? OrderCursor.after(items.get(items.size() - 1)).encode() : null;
+        return new OrderPageResponse(items, nextCursor, hasNext);
     }
 
     public List<Order> getAllOrders() {
@@ -156,37 +254,14 @@ public class OrderService {
 
     // ============= PRIVATE HELPER METHODS =============
 
-    private OrderCalculationDTO validateAndCalculateOrder(Integer userId) {
-        // Get cart items
-        List<CartItem> cartItems = getCartItems(userId);
-
+    // Stock check and total in one walk over the lines, whose products were fetched with the cart
+    private OrderCalculationDTO validateAndCalculateOrder(List<CartItem> cartItems) {
         if (cartItems.isEmpty()) {
             throw new EmptyCartException("Cart is empty");
         }
 
-        // Check stock availability
-        List<String> stockIssues = checkStockAvailability(cartItems);
-        boolean allItemsInStock = stockIssues.isEmpty();
-
-        // Calculate total
-        BigDecimal totalAmount = calculateOrderTotal(cartItems);
-
-        return OrderCalculationDTO.builder()
-                .stockIssues(stockIssues)
-                .totalAmount(totalAmount)
-                .allItemsInStock(allItemsInStock)
-                .build();
-    }
-
-    private List<CartItem> getCartItems(Integer userId) {
-        Cart cart = cartRepository.findByUserId(userId.longValue())
-                .orElseThrow(() -> new EmptyCartException("Cart not found for user: " + userId));
-
-        return cartItemsRepository.findByCartId(cart.getId());
-    }
-
-    private List<String> checkStockAvailability(List<CartItem> cartItems) {
         List<String> stockIssues = new ArrayList<>();
+        BigDecimal totalAmount = BigDecimal.ZERO;
 
         for (CartItem item : cartItems) {
             Product product = item.getProduct();
@@ -198,15 +273,14 @@ public class OrderService {
                         product.getName(), requestedQuantity, availableStock);
                 stockIssues.add(issue);
             }
+            totalAmount = totalAmount.add(product.getPrice().multiply(new BigDecimal(requestedQuantity)));
         }
 
-        return stockIssues;
-    }
-
-    private BigDecimal calculateOrderTotal(List<CartItem> cartItems) {
-        return cartItems.stream()
-                .map(item -> item.getProduct().getPrice().multiply(new BigDecimal(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return OrderCalculationDTO.builder()
+                .stockIssues(stockIssues)
+                .totalAmount(totalAmount)
+                .allItemsInStock(stockIssues.isEmpty())
+                .build();
     }
 
     private Order createOrderRecord(Integer userId, BigDecimal totalAmount) {
@@ -218,16 +292,18 @@ public class OrderService {
         return orderRepository.save(order);
     }
 
+    // Inserted at flush together with the order, as batched statements
     private void createOrderItems(Order order, List<CartItem> cartItems) {
+        List<OrderItems> orderItems = new ArrayList<>(cartItems.size());
         for (CartItem cartItem : cartItems) {
             OrderItems orderItem = new OrderItems();
             orderItem.setOrderId(order.getId().intValue());
             orderItem.setProductId(cartItem.getProduct().getId().intValue());
             orderItem.setQuantity(cartItem.getQuantity());
             orderItem.setPriceAtPurchase(cartItem.getProduct().getPrice());
-
-            orderItemsRepository.save(orderItem);
+            orderItems.add(orderItem);
         }
+        orderItemsRepository.saveAll(orderItems);
     }
 
     private Payment createPaymentRecord(Order order, String paymentReference) {
@@ -244,40 +320,87 @@ public class OrderService {
         return savedPayment;
     }
 
-    private void decrementProductStock(List<CartItem> cartItems) {
-        for (CartItem item : cartItems) {
-            Product product = item.getProduct();
-            int oldStock = product.getStockQuantity();
-            int newStock = oldStock - item.getQuantity();
+    private PendingCheckout createOrderWithStock(Integer userId) {
+        // cart, lines and products in a single select; everything below works on this snapshot
+        Cart cart = cartRepository.findWithItemsByUserId(userId.longValue())
+                .orElseThrow(() -> new EmptyCartException("Cart not found for user: " + userId));
+        List<CartItem> cartItems = cart.getItems();
 
-            if (newStock < 0) {
-                throw new InsufficientStockException("Insufficient stock for product: " + product.getName());
-            }
+        OrderCalculationDTO calculation = validateAndCalculateOrder(cartItems);
+        if (!calculation.isAllItemsInStock()) {
+            throw new InsufficientStockException("Insufficient stock: " + String.join(", ", calculation.getStockIssues()));
+        }
+
+        Order order = createOrderRecord(userId, calculation.getTotalAmount());
+        createOrderItems(order, cartItems);
+
+        // take the stock out and hold it until the payment settles or the hold expires
+        Map<Long, Integer> quantities = quantitiesOf(cartItems);
+        inventoryService.decrement(quantities);
+        reservationLedger.hold(order.getId());
+        return PendingCheckout.of(order, cartItems, quantities);
+    }
 
-            product.setStockQuantity(newStock);
-            productRepository.save(product);
+    // If the compensation fails as well the hold stays, and the expiry sweep cancels the order later
+    private void compensateFailedPaymentIntent(Long orderId, RuntimeException cause) {
+        log.error("Payment intent creation failed for order {}, cancelling it", orderId, cause);
+        try {
+            meterRegistry.timer(TRANSACTION_TIMER, "phase", "compensate")
+                    .record(() -> transactionTemplate.execute(status -> {
+                        reservationLedger.release(orderId);
+                        return cancelPendingOrder(orderId);
+                    }));
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Order {} left for the reservation expiry sweep: {}", orderId, e.getMessage());
+            cause.addSuppressed(e);
         }
     }
 
-    private void restoreProductStock(Order order) {
-        List<OrderItems> orderItems = orderItemsRepository.findByOrderId(order.getId().intValue());
+    // Best effort: a payment that still succeeds is refunded once its webhook arrives
+    private void cancelPaymentIntent(Long orderId) {
+        paymentRepository.findByOrderId(orderId.intValue()).ifPresent(payment -> {
+            try {
+                stripePaymentService.cancelPaymentIntent(payment.getPaymentReference());
+            } catch (RuntimeException e) {
+                log.warn("Payment intent {} of expired order {} not cancelled: {}",
+                        payment.getPaymentReference(), orderId, e.getMessage());
+            }
+        });
+    }
 
-        for (OrderItems item : orderItems) {
-            Product product = productRepository.findById(item.getProductId().longValue())
-                    .orElseThrow(() -> new ProductNotFoundException(item.getProductId().longValue()));
+    private static Map<Long, Integer> quantitiesOf(List<CartItem> cartItems) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (CartItem item : cartItems) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
 
-            int oldStock = product.getStockQuantity();
-            int newStock = oldStock + item.getQuantity();
-            product.setStockQuantity(newStock);
-            productRepository.save(product);
+    // Only the caller that moves the order out of PENDING gives the stock back, so the failure
+    // webhook, the expiry sweep and retries of either cannot restore it twice
+    private boolean cancelPendingOrder(Long orderId) {
+        if (orderRepository.updateStatusIf(orderId, OrderStatus.PENDING, OrderStatus.CANCELLED) == 0) {
+            return false;
         }
+        inventoryService.restore(orderQuantities(orderId));
+        return true;
     }
 
-    private void clearUserCart(Integer userId) {
-        Cart cart = cartRepository.findByUserId(userId.longValue())
-                .orElseThrow(() -> new EmptyCartException("Cart not found for user: " + userId));
+    private Map<Long, Integer> orderQuantities(Long orderId) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (OrderItems item : orderItemsRepository.findByOrderId(orderId.intValue())) {
+            quantities.merge(item.getProductId().longValue(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
 
-        cartItemsRepository.deleteByCart(cart);
+    // Runs after the Stripe round trip, so only what the snapshot ordered is taken out of the cart;
+    // lines the user added or topped up in the meantime stay
+    private void clearUserCart(Integer userId, PendingCheckout checkout) {
+        cartItemsRepository.deleteOrderedLines(checkout.lineIds(), checkout.lineQuantities());
+        cartItemsRepository.subtractOrderedQuantities(checkout.lineIds(), checkout.lineQuantities());
+        cartRepository.recountItems(userId.longValue());
+        cartStore.subtractAfterCommit(userId.longValue(), checkout.quantities());
     }
 
     private Payment findPaymentByReference(String paymentReference) {
@@ -289,4 +412,18 @@ public class OrderService {
         return orderRepository.findById(orderId)
                 .orElseThrow(() -> new OrderNotFoundException("Order not found: " + orderId));
     }
-}
\ No newline at end of file
+
+    // The order plus the cart lines it was built from, by line id and by product
+    private record PendingCheckout(Order order, Long[] lineIds, Integer[] lineQuantities, Map<Long, Integer> quantities) {
+
+        static PendingCheckout of(Order order, List<CartItem> cartItems, Map<Long, Integer> quantities) {
+            Long[] lineIds = new Long[cartItems.size()];
+            Integer[] lineQuantities = new Integer[cartItems.size()];
+            for (int i = 0; i < cartItems.size(); i++) {
+                lineIds[i] = cartItems.get(i).getId();
+                lineQuantities[i] = cartItems.get(i).getQuantity();
+            }
+            return new PendingCheckout(order, lineIds, lineQuantities, quantities);
+        }
+    }
+}
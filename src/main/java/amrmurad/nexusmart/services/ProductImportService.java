@@ -0,0 +1,296 @@
+package amrmurad.nexusmart.services;
+
+import amrmurad.nexusmart.DTOs.productDTOs.ProductImportError;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductImportReport;
+import amrmurad.nexusmart.catalog.ProductChangedEvent;
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams a CSV or NDJSON catalog feed into the products table one chunk at a
+ * time, so memory stays flat whatever the size of the upload. Bad rows are
+ * reported back with their line number instead of failing the whole load.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductImportService {
+
+    public static final String CSV = "text/csv";
+    public static final String NDJSON = "application/x-ndjson";
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final String INSERT_SQL =
+            "INSERT INTO products (name, description, price, stock_quantity, created_at, updated_at, version) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, 0)";
+
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ProductImportReport importProducts(InputStream body, String contentType) throws IOException {
+        boolean csv = contentType != null && contentType.startsWith(CSV);
+        if (!csv && (contentType == null || !contentType.startsWith(NDJSON))) {
+            throw new IllegalArgumentException("unsupported import format: " + contentType);
+        }
+
+        ImportProgress progress = new ImportProgress();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            Map<String, Integer> csvColumns = null;
+            List<ImportRow> chunk = new ArrayList<>(CHUNK_SIZE);
+            long lineNumber = 0;
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (csv && csvColumns == null) {
+                    csvColumns = parseCsvHeader(line);
+                    continue;
+                }
+                chunk.add(new ImportRow(lineNumber, line));
+                if (chunk.size() == CHUNK_SIZE) {
+                    importChunk(chunk, csvColumns, progress);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(chunk, csvColumns, progress);
+            }
+        }
+
+        log.info("Product import finished: {} rows, {} imported, {} failed",
+                progress.totalRows, progress.importedCount, progress.failedCount);
+        return ProductImportReport.builder()
+                .totalRows(progress.totalRows)
+                .importedCount(progress.importedCount)
+                .failedCount(progress.failedCount)
+                .errors(progress.errors)
+                .errorsTruncated(progress.failedCount > progress.errors.size())
+                .build();
+    }
+
+    private void importChunk(List<ImportRow> chunk, Map<String, Integer> csvColumns, ImportProgress progress) {
+        progress.totalRows += chunk.size();
+
+        // parsing and the createProduct validation rules are pure CPU work, spread them over the cores
+        chunk.parallelStream().forEach(row -> {
+            try {
+                row.product = csvColumns != null ? parseCsvRow(row.raw, csvColumns) : parseJsonRow(row.raw);
+                ProductService.validateProductForCreation(row.product);
+                row.product.setName(row.product.getName().trim());
+            } catch (IllegalArgumentException | IOException e) {
+                row.error = e.getMessage();
+            }
+        });
+
+        List<ImportRow> valid = rejectDuplicateNames(chunk);
+        for (ImportRow row : chunk) {
+            if (row.error != null) {
+                progress.fail(row);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        try {
+            insertChunk(valid);
+            progress.importedCount += valid.size();
+        } catch (DataAccessException e) {
+            // a constraint the validation rules do not know about fails the whole batch, so find the culprits row by row
+            log.warn("Product import chunk of {} rows failed, retrying row by row: {}",
+                    valid.size(), e.getMostSpecificCause().getMessage());
+            for (ImportRow row : valid) {
+                try {
+                    insertChunk(List.of(row));
+                    progress.importedCount++;
+                } catch (DataAccessException rowFailure) {
+                    row.error = "row could not be stored: " + rowFailure.getMostSpecificCause().getMessage();
+                    progress.fail(row);
+                }
+            }
+        }
+    }
+
+    private void insertChunk(List<ImportRow> valid) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            jdbcTemplate.batchUpdate(INSERT_SQL, valid, valid.size(), (ps, row) -> {
+                Product product = row.product;
+                ps.setString(1, product.getName());
+                ps.setString(2, product.getDescription());
+                ps.setBigDecimal(3, product.getPrice());
+                ps.setInt(4, product.getStockQuantity());
+                ps.setTimestamp(5, now);
+                ps.setTimestamp(6, now);
+            });
+
+            // JDBC batches do not hand back identity keys, read the new rows once to feed the catalog indexes
+            List<String> names = valid.stream().map(row -> row.product.getName()).toList();
+            productRepository.findByNameIn(names)
+                    .forEach(product -> eventPublisher.publishEvent(ProductChangedEvent.upserted(product)));
+        });
+    }
+
+    // Name uniqueness is checked once per chunk against the database and within the chunk itself;
+    // earlier chunks are already committed, so the database check also covers them
+    private List<ImportRow> rejectDuplicateNames(List<ImportRow> chunk) {
+        Set<String> lowerNames = new HashSet<>();
+        for (ImportRow row : chunk) {
+            if (row.error == null) {
+                lowerNames.add(row.product.getName().toLowerCase(Locale.ROOT));
+            }
+        }
+        Set<String> taken = lowerNames.isEmpty()
+                ? new HashSet<>()
+                : new HashSet<>(productRepository.findExistingLowerCaseNames(lowerNames));
+
+        List<ImportRow> valid = new ArrayList<>();
+        for (ImportRow row : chunk) {
+            if (row.error != null) {
+                continue;
+            }
+            if (!taken.add(row.product.getName().toLowerCase(Locale.ROOT))) {
+                row.error = "product with name '" + row.product.getName() + "' already exist";
+                continue;
+            }
+            valid.add(row);
+        }
+        return valid;
+    }
+
+    private Product parseJsonRow(String raw) throws IOException {
+        Product product = objectMapper.readValue(raw, Product.class);
+        if (product == null) {
+            throw new IllegalArgumentException("row must be a JSON object");
+        }
+        product.setId(null);
+        return product;
+    }
+
+    private Map<String, Integer> parseCsvHeader(String line) {
+        List<String> header = splitCsvLine(line);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String column = header.get(i).trim().toLowerCase(Locale.ROOT).replace("_", "");
+            columns.put(column, i);
+        }
+        if (!columns.containsKey("name") || !columns.containsKey("price") || !columns.containsKey("stockquantity")) {
+            throw new IllegalArgumentException("CSV header must contain name, price and stockQuantity columns");
+        }
+        return columns;
+    }
+
+    private Product parseCsvRow(String line, Map<String, Integer> columns) {
+        List<String> fields = splitCsvLine(line);
+        Product product = new Product();
+        product.setName(field(fields, columns.get("name")));
+        product.setDescription(field(fields, columns.get("description")));
+
+        String price = field(fields, columns.get("price"));
+        String stock = field(fields, columns.get("stockquantity"));
+        try {
+            product.setPrice(price == null ? null : new BigDecimal(price.trim()));
+            product.setStockQuantity(stock == null ? null : Integer.valueOf(stock.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid number in row: " + e.getMessage());
+        }
+        return product;
+    }
+
+    private static String field(List<String> fields, Integer index) {
+        if (index == null || index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    // RFC 4180 style fields on a single line: quoted fields may contain commas and "" escapes
+    static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private static final class ImportRow {
+        private final long line;
+        private final String raw;
+        private Product product;
+        private String error;
+
+        private ImportRow(long line, String raw) {
+            this.line = line;
+            this.raw = raw;
+        }
+    }
+
+    private static final class ImportProgress {
+        private long totalRows;
+        private long importedCount;
+        private long failedCount;
+        private final List<ProductImportError> errors = new ArrayList<>();
+
+        private void fail(ImportRow row) {
+            failedCount++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ProductImportError(row.line, row.error));
+            }
+        }
+    }
+}
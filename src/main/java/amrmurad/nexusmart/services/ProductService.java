@@ -1,30 +1,143 @@
 package amrmurad.nexusmart.services;
 
+import amrmurad.nexusmart.DTOs.productDTOs.ProductBulkUpdateRequest;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductBulkUpdateResponse;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductBulkUpdateResult;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductCursor;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductPageResponse;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductSuggestion;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductSummary;
+import amrmurad.nexusmart.catalog.CatalogSnapshot;
+import amrmurad.nexusmart.catalog.LowStockMonitor;
+import amrmurad.nexusmart.catalog.ProductAutocomplete;
+import amrmurad.nexusmart.catalog.ProductCache;
+import amrmurad.nexusmart.catalog.ProductChangedEvent;
+import amrmurad.nexusmart.catalog.ProductNameIndex;
+import amrmurad.nexusmart.catalog.ProductPriceIndex;
 import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.enums.BulkUpdateStatus;
+import amrmurad.nexusmart.enums.ProductSort;
 import amrmurad.nexusmart.exceptions.ProductNotFoundException;
 import amrmurad.nexusmart.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class ProductService {
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int DEFAULT_SEARCH_RESULTS = 50;
+    private static final int MAX_SEARCH_RESULTS = 200;
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final int MAX_DESCRIPTION_LENGTH = 1000;
+    private static final BigDecimal MAX_PRICE = new BigDecimal("99999999.99");
+    private static final int MAX_BULK_UPDATE_ITEMS = 50_000;
+    private static final int BULK_UPDATE_CHUNK_SIZE = 1000;
+    private static final String BULK_UPDATE_SQL =
+            "UPDATE products SET price = COALESCE(?, price), stock_quantity = COALESCE(?, stock_quantity), "
+                    + "version = version + 1, updated_at = LOCALTIMESTAMP WHERE id = ?";
+
     private final ProductRepository productRepository;
+    private final ProductCache productCache;
+    private final ProductNameIndex productNameIndex;
+    private final ProductPriceIndex productPriceIndex;
+    private final LowStockMonitor lowStockMonitor;
+    private final ProductAutocomplete productAutocomplete;
+    private final CatalogSnapshot catalogSnapshot;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
 
     @Transactional(readOnly = true)
-    public List<Product> getAllProducts(){
-        return productRepository.findAll();
+    public ProductPageResponse<ProductSummary> getProductsPage(String cursor, Integer size, ProductSort sort){
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+            throw new IllegalArgumentException("page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        ProductSort productSort = sort == null ? ProductSort.ID : sort;
+
+        ProductCursor position = ProductCursor.first(productSort);
+        if (cursor != null && !cursor.isBlank()){
+            position = ProductCursor.decode(cursor);
+            if (position.sort() != productSort){
+                throw new IllegalArgumentException("cursor was issued for sort " + position.sort());
+            }
+        }
+
+        // fetch one extra row to know whether another page exists without a count query
+        List<ProductSummary> rows = findPage(position, PageRequest.ofSize(pageSize + 1));
+        boolean hasNext = rows.size() > pageSize;
+        List<ProductSummary> items = hasNext ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = hasNext
+                ? ProductCursor.after(productSort, items.get(items.size() - 1)).encode()
+                : null;
+        return new ProductPageResponse<>(items, nextCursor, hasNext);
     }
 
-    @Transactional(readOnly = true)
+    private List<ProductSummary> findPage(ProductCursor position, Pageable limit){
+        return switch (position.sort()) {
+            case ID -> productRepository.findPageById(position.lastId(), limit);
+            case PRICE -> productRepository.findPageByPrice(position.priceKey(), position.lastId(), limit);
+            case NAME -> productRepository.findPageByName(position.sortKey(), position.lastId(), limit);
+            case NEWEST -> productRepository.findPageByNewest(position.createdAtKey(), position.lastId(), limit);
+        };
+    }
+
+    // SUPPORTS: no connection is taken up front, so a database outage reaches the snapshot fallback
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public Product getProductById(Long id ){
+        if (id == null){
+            throw new IllegalArgumentException("product ID cannot be null");
+        }
+        Product product;
+        try {
+            product = productCache.findById(id)
+                    .orElseThrow(() -> new ProductNotFoundException(id));
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Database unavailable, serving product {} from catalog snapshot: {}", id, e.getMessage());
+            product = catalogSnapshot.findById(id).orElseThrow(() -> e);
+        }
+        productAutocomplete.recordView(id);
+        return product;
+    }
+
+    public List<ProductSuggestion> autocomplete(String prefix, Integer limit){
+        if (prefix == null || prefix.isBlank()){
+            throw new IllegalArgumentException("prefix cannot be empty");
+        }
+        int suggestionLimit = limit == null ? ProductAutocomplete.MAX_SUGGESTIONS : limit;
+        if (suggestionLimit <= 0 || suggestionLimit > ProductAutocomplete.MAX_SUGGESTIONS){
+            throw new IllegalArgumentException("limit must be between 1 and " + ProductAutocomplete.MAX_SUGGESTIONS);
+        }
+        return productAutocomplete.suggest(prefix, suggestionLimit);
+    }
+
+    // Writes start from the managed entity, never from a cached copy
+    private Product findProductForUpdate(Long id){
         if (id == null){
             throw new IllegalArgumentException("product ID cannot be null");
         }
@@ -41,13 +154,14 @@ public class ProductService {
         log.info("Creating new product: {}", product.getName());
         Product savedProduct = productRepository.save(product);
         log.info("Saved product with ID: {}", product.getId());
+        eventPublisher.publishEvent(ProductChangedEvent.upserted(savedProduct));
         return savedProduct;
 
     }
 
 
     public Product updateProduct(Long id, Product productDetails){
-        Product existingProduct = getProductById(id);
+        Product existingProduct = findProductForUpdate(id);
 
         if (productDetails.getName() != null && !productDetails.getName().trim().isEmpty()){
             if (productRepository.existsByNameIgnoreCase(productDetails.getName()) &&
@@ -72,7 +186,11 @@ public class ProductService {
         }
 
         log.info("Updating product with ID: {}", id);
-        return productRepository.save(existingProduct);
+        Product savedProduct = productRepository.save(existingProduct);
+        eventPublisher.publishEvent(productDetails.getPrice() != null
+                ? ProductChangedEvent.upserted(savedProduct)
+                : ProductChangedEvent.stockChanged(savedProduct));
+        return savedProduct;
     }
     public void deleteProduct(Long id){
         if (!productRepository.existsById(id)){
@@ -80,69 +198,236 @@ public class ProductService {
         }
         log.info("Delete product with id {}", id );
         productRepository.deleteById(id);
+        eventPublisher.publishEvent(ProductChangedEvent.deleted(id));
     }
-    private void validateProductForCreation(Product product) {
+    // Static so the bulk importer can run it from parallel workers without going through the proxy
+    static void validateProductForCreation(Product product) {
         if (product == null){
             throw new IllegalArgumentException("product cannot be null");
         }
         if (product.getName() == null || product.getName().trim().isEmpty()){
             throw new IllegalArgumentException("product name is required");
         }
+        if (product.getName().trim().length() > MAX_NAME_LENGTH){
+            throw new IllegalArgumentException("product name must not exceed " + MAX_NAME_LENGTH + " characters");
+        }
+        if (product.getDescription() != null && product.getDescription().length() > MAX_DESCRIPTION_LENGTH){
+            throw new IllegalArgumentException("Description must not exceed " + MAX_DESCRIPTION_LENGTH + " characters");
+        }
         validatePrice(product.getPrice());
         validateStockQuantity(product.getStockQuantity());
     }
 
-    private void validateStockQuantity(Integer stockQuantity) {
+    private static void validateStockQuantity(Integer stockQuantity) {
         if (stockQuantity == null)
             throw new IllegalArgumentException("quantity cannot be null");
         if (stockQuantity < 0)
             throw new IllegalArgumentException("quantity cannot be negative");
     }
 
-    private void validatePrice(BigDecimal price) {
+    private static void validatePrice(BigDecimal price) {
         if (price == null){
             throw new IllegalArgumentException("price is required");
         }
         if (price.compareTo(BigDecimal.ZERO) <= 0){
             throw new IllegalArgumentException("price cannot be negative");
         }
+        // the column is numeric(10,2)
+        if (price.compareTo(MAX_PRICE) > 0){
+            throw new IllegalArgumentException("price cannot exceed " + MAX_PRICE);
+        }
     }
 
 
-    @Transactional(readOnly = true)
-    public List<Product> searchProductByName (String name){
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    // Returns at most limit matches (50 by default, 200 at most), best match first
+    public List<ProductSummary> searchProductByName (String name, Integer limit){
         if (name == null || name.trim().isEmpty()){
             throw new IllegalArgumentException("name cannot be empty");
         }
-        return productRepository.findByNameContainingIgnoreCase(name.trim());
+        int resultLimit = limit == null ? DEFAULT_SEARCH_RESULTS : limit;
+        if (resultLimit <= 0 || resultLimit > MAX_SEARCH_RESULTS){
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_SEARCH_RESULTS);
+        }
+        if (!productNameIndex.isReady()){
+            return productRepository.findSummariesByNameContaining(name.trim(), resultLimit);
+        }
+        List<Long> rankedIds = productNameIndex.search(name, resultLimit);
+        return findAllInOrder(rankedIds);
     }
 
-    @Transactional(readOnly = true)
-    public List<Product> getProductByPriceRange(BigDecimal maxPrice, BigDecimal minPrice){
+    // an IN query gives no ordering guarantee, put the rows back in the order of the ids.
+    // The in-memory indexes still answer during a database outage, the rows then come from the snapshot
+    private List<ProductSummary> findAllInOrder(List<Long> ids){
+        if (ids.isEmpty()){
+            return List.of();
+        }
+        Map<Long, Integer> positions = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++){
+            positions.put(ids.get(i), i);
+        }
+        List<ProductSummary> rows;
+        try {
+            rows = productRepository.findSummariesByIdIn(ids);
+        } catch (DataAccessException | TransactionException e) {
+            if (!catalogSnapshot.isLoaded()){
+                throw e;
+            }
+            log.warn("Database unavailable, serving {} products from catalog snapshot: {}", ids.size(), e.getMessage());
+            rows = catalogSnapshot.findSummaries(ids);
+        }
+        return rows.stream()
+                .sorted(Comparator.comparing(product -> positions.get(product.id())))
+                .toList();
+    }
+
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<ProductSummary> getProductByPriceRange(BigDecimal minPrice, BigDecimal maxPrice, int offset, int limit){
         if (minPrice == null || maxPrice == null){
             throw new IllegalArgumentException("price cannot be null");
         }
         if (minPrice.compareTo(maxPrice) > 0 ){
             throw new IllegalArgumentException("Minimum price cannot be greater than maximum price");
         }
-        return productRepository.findByPriceBetween(minPrice, maxPrice);
+        if (offset < 0){
+            throw new IllegalArgumentException("offset cannot be negative");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE){
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (!productPriceIndex.isReady()){
+            return productRepository.findSummariesByPriceBetween(minPrice, maxPrice, offset, limit);
+        }
+        List<Long> ids = productPriceIndex.findIdsInRange(minPrice, maxPrice, offset, limit);
+        return findAllInOrder(ids);
     }
-    @Transactional(readOnly = true)
-    public List<Product> getLowStockProducts(Integer threshold) {
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<ProductSummary> getLowStockProducts(Integer threshold) {
         if (threshold == null || threshold < 0) {
             throw new IllegalArgumentException("Threshold must be a non-negative number");
         }
-        return productRepository.findByStockQuantityLessThan(threshold);
+        if (!lowStockMonitor.canServe(threshold)) {
+            return productRepository.findSummariesByStockBelow(threshold);
+        }
+        return findAllInOrder(lowStockMonitor.findIdsBelow(threshold));
     }
 
     public Product updateStock(Long id, Integer newQuantity) {
         validateStockQuantity(newQuantity);
-        Product product = getProductById(id);
+        Product product = findProductForUpdate(id);
         product.setStockQuantity(newQuantity);
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.stockChanged(savedProduct));
+        return savedProduct;
     }
 
-}
+    /**
+     * Applies price and/or stock changes to many products. Items are validated up front,
+     * then written as batched UPDATE statements, one transaction per chunk, so a failing
+     * chunk never rolls back the ones already applied.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ProductBulkUpdateResponse bulkUpdate(List<ProductBulkUpdateRequest> updates) {
+        if (updates == null || updates.isEmpty()) {
+            throw new IllegalArgumentException("updates cannot be empty");
+        }
+        if (updates.size() > MAX_BULK_UPDATE_ITEMS) {
+            throw new IllegalArgumentException("at most " + MAX_BULK_UPDATE_ITEMS + " updates per request");
+        }
 
+        ProductBulkUpdateResult[] results = new ProductBulkUpdateResult[updates.size()];
+        List<Integer> valid = new ArrayList<>();
+        for (int i = 0; i < updates.size(); i++) {
+            ProductBulkUpdateRequest update = updates.get(i);
+            String problem = validateBulkUpdate(update);
+            if (problem != null) {
+                results[i] = new ProductBulkUpdateResult(update == null ? null : update.getId(), BulkUpdateStatus.INVALID, problem);
+            } else {
+                valid.add(i);
+            }
+        }
 
+        for (int from = 0; from < valid.size(); from += BULK_UPDATE_CHUNK_SIZE) {
+            List<Integer> chunk = valid.subList(from, Math.min(from + BULK_UPDATE_CHUNK_SIZE, valid.size()));
+            try {
+                applyBulkUpdateChunk(updates, chunk, results);
+            } catch (DataAccessException | TransactionException e) {
+                // the chunk rolled back as a whole, the ones before it stay applied
+                String message = e.getMostSpecificCause().getMessage();
+                log.warn("Bulk update chunk of {} products failed: {}", chunk.size(), message);
+                for (int index : chunk) {
+                    results[index] = new ProductBulkUpdateResult(updates.get(index).getId(), BulkUpdateStatus.FAILED,
+                            "update could not be stored: " + message);
+                }
+            }
+        }
 
+        List<ProductBulkUpdateResult> resultList = List.of(results);
+        int updatedCount = (int) resultList.stream().filter(result -> result.getStatus() == BulkUpdateStatus.UPDATED).count();
+        log.info("Bulk update applied to {} of {} products", updatedCount, updates.size());
+        return new ProductBulkUpdateResponse(updatedCount, updates.size() - updatedCount, resultList);
+    }
+
+    private void applyBulkUpdateChunk(List<ProductBulkUpdateRequest> updates, List<Integer> chunk,
+                                      ProductBulkUpdateResult[] results) {
+        transactionTemplate.executeWithoutResult(status -> {
+            int[][] rowCounts = jdbcTemplate.batchUpdate(BULK_UPDATE_SQL, chunk, chunk.size(), (ps, index) -> {
+                ProductBulkUpdateRequest update = updates.get(index);
+                if (update.getPrice() != null) {
+                    ps.setBigDecimal(1, update.getPrice());
+                } else {
+                    ps.setNull(1, Types.NUMERIC);
+                }
+                if (update.getStockQuantity() != null) {
+                    ps.setInt(2, update.getStockQuantity());
+                } else {
+                    ps.setNull(2, Types.INTEGER);
+                }
+                ps.setLong(3, update.getId());
+            });
+
+            List<Long> updatedIds = new ArrayList<>();
+            Set<Long> repricedIds = new HashSet<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                int index = chunk.get(i);
+                Long id = updates.get(index).getId();
+                if (rowCounts[0][i] > 0) {
+                    updatedIds.add(id);
+                    if (updates.get(index).getPrice() != null) {
+                        repricedIds.add(id);
+                    }
+                    results[index] = new ProductBulkUpdateResult(id, BulkUpdateStatus.UPDATED, null);
+                } else {
+                    results[index] = new ProductBulkUpdateResult(id, BulkUpdateStatus.NOT_FOUND, "product not found with id: " + id);
+                }
+            }
+
+            // keep the cache and indexes in step, they are refreshed once this chunk commits
+            productRepository.findAllById(updatedIds)
+                    .forEach(product -> eventPublisher.publishEvent(repricedIds.contains(product.getId())
+                            ? ProductChangedEvent.upserted(product)
+                            : ProductChangedEvent.stockChanged(product)));
+        });
+    }
+
+    private static String validateBulkUpdate(ProductBulkUpdateRequest update) {
+        if (update == null || update.getId() == null) {
+            return "product ID cannot be null";
+        }
+        if (update.getPrice() == null && update.getStockQuantity() == null) {
+            return "price or stockQuantity is required";
+        }
+        try {
+            if (update.getPrice() != null) {
+                validatePrice(update.getPrice());
+            }
+            if (update.getStockQuantity() != null) {
+                validateStockQuantity(update.getStockQuantity());
+            }
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+}
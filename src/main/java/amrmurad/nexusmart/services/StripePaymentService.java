@@ -8,12 +8,16 @@ import com.stripe.exception.SignatureVerificationException;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Event;
 import com.stripe.model.PaymentIntent;
+import com.stripe.model.Refund;
+import com.stripe.net.RequestOptions;
 import com.stripe.net.Webhook;
 import com.stripe.param.PaymentIntentCreateParams;
+import com.stripe.param.RefundCreateParams;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -39,6 +43,8 @@ public class StripePaymentService {
     }
 
 
+    // The remote call runs without a transaction, the Payment row is saved in its own short one afterwards
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public PaymentIntent createPaymentIntent(Long amountInCents, String currency, String orderId, PaymentMethod paymentMethod) {
         try {
             Map<String, String> metadata = new HashMap<>();
@@ -128,6 +134,32 @@ public class StripePaymentService {
         }
     }
 
+    // Called once an unpaid order's stock hold expired, so the customer can no longer pay for it
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public PaymentIntent cancelPaymentIntent(String paymentIntentId) {
+        try {
+            return PaymentIntent.retrieve(paymentIntentId).cancel();
+        } catch (StripeException e) {
+            throw new RuntimeException("Payment intent cancellation failed", e);
+        }
+    }
+
+    // Keyed by the intent, so a retry after a crash or timeout never refunds twice
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Refund refundPayment(String paymentIntentId) {
+        try {
+            RefundCreateParams params = RefundCreateParams.builder()
+                    .setPaymentIntent(paymentIntentId)
+                    .build();
+            RequestOptions options = RequestOptions.builder()
+                    .setIdempotencyKey("refund-" + paymentIntentId)
+                    .build();
+            return Refund.create(params, options);
+        } catch (StripeException e) {
+            throw new RuntimeException("Refund failed", e);
+        }
+    }
+
     public PaymentIntent getPaymentIntent(String paymentIntentId) {
         try {
             return PaymentIntent.retrieve(paymentIntentId);
@@ -157,7 +189,7 @@ public class StripePaymentService {
 
             // Update Payment entity
             Optional<Payment> paymentOpt = paymentRepository.findByOrderId(Integer.valueOf(orderId));
-            if (paymentOpt.isPresent()) {
+            if (paymentOpt.isPresent() && !isBeingRefunded(paymentOpt.get())) {
                 Payment payment = paymentOpt.get();
                 payment.setPaymentStatus(PaymentStatus.COMPLETED);
                 payment.setPaidAt(LocalDateTime.now());
@@ -166,6 +198,12 @@ public class StripePaymentService {
         }
     }
 
+    // A late payment for a cancelled order is refunded by OrderService, it must not read as completed again
+    private static boolean isBeingRefunded(Payment payment) {
+        return payment.getPaymentStatus() == PaymentStatus.REFUND_PENDING
+                || payment.getPaymentStatus() == PaymentStatus.REFUNDED;
+    }
+
     private void handlePaymentIntentFailed(Event event) {
         PaymentIntent paymentIntent = (PaymentIntent) event.getDataObjectDeserializer()
                 .getObject().orElse(null);
@@ -0,0 +1,213 @@
+package amrmurad.nexusmart.cart;
+
+import amrmurad.nexusmart.entities.Cart;
+import amrmurad.nexusmart.entities.CartItem;
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.entities.User;
+import amrmurad.nexusmart.enums.Role;
+import amrmurad.nexusmart.repository.CartRepository;
+import amrmurad.nexusmart.repository.ProductRepository;
+import amrmurad.nexusmart.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "nexusmart.cart.reaper.enabled=false")
+class AbandonedCartReaperTest {
+
+    private static final Duration MAX_AGE = Duration.ofDays(30);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final List<Long> cartIds = new ArrayList<>();
+    private final List<User> users = new ArrayList<>();
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        product = new Product();
+        product.setName("Reaper test product");
+        product.setPrice(BigDecimal.valueOf(4.99));
+        product.setStockQuantity(10);
+        product = productRepository.save(product);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        for (Long cartId : cartIds) {
+            jdbcTemplate.update("DELETE FROM cart_items WHERE cart_id = ?", cartId);
+            jdbcTemplate.update("DELETE FROM carts WHERE id = ?", cartId);
+        }
+        userRepository.deleteAll(users);
+        productRepository.delete(product);
+    }
+
+    private AbandonedCartReaper newReaper(int batchSize, int maxBatchesPerRun) {
+        return new AbandonedCartReaper(jdbcTemplate, transactionTemplate, true, MAX_AGE, batchSize, maxBatchesPerRun);
+    }
+
+    // A cart with one line, last touched the given number of days ago
+    private Long createCart(int daysIdle) {
+        String name = "reaper-" + UUID.randomUUID();
+        User user = userRepository.save(User.builder()
+                .username(name)
+                .email(name + "@example.com")
+                .password("secret")
+                .role(Role.USER)
+                .build());
+        users.add(user);
+
+        Cart cart = new Cart();
+        cart.setUser(user);
+        CartItem item = new CartItem();
+        item.setCart(cart);
+        item.setProduct(product);
+        item.setQuantity(2);
+        cart.getItems().add(item);
+        cart.setItemCount(2);
+        Long cartId = cartRepository.save(cart).getId();
+        cartIds.add(cartId);
+
+        // @UpdateTimestamp would overwrite the age, so it is set with plain SQL
+        jdbcTemplate.update("UPDATE carts SET updated_at = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(daysIdle)), cartId);
+        return cartId;
+    }
+
+    private boolean cartExists(Long cartId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM carts WHERE id = ?", Integer.class, cartId) > 0;
+    }
+
+    private int lineCount(Long cartId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cart_items WHERE cart_id = ?", Integer.class, cartId);
+    }
+
+    @Test
+    void reap_ShouldDeleteStaleCartsWithTheirLinesAndKeepActiveOnes() {
+        // Given
+        Long stale = createCart(45);
+        Long active = createCart(1);
+
+        // When
+        newReaper(500, 100).reap();
+
+        // Then: lines go first, otherwise the foreign key would have failed the batch
+        assertFalse(cartExists(stale));
+        assertEquals(0, lineCount(stale));
+        assertTrue(cartExists(active));
+        assertEquals(1, lineCount(active));
+    }
+
+    @Test
+    void reap_ShouldStopAfterMaxBatchesOldestFirst() {
+        // Given: seven stale carts, each older than the next
+        List<Long> stale = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            stale.add(createCart(100 - i));
+        }
+
+        // When: three batches of two fit in one run
+        newReaper(2, 3).reap();
+
+        // Then
+        for (int i = 0; i < 6; i++) {
+            assertFalse(cartExists(stale.get(i)), "cart " + i + " should be purged");
+        }
+        assertTrue(cartExists(stale.get(6)));
+        assertEquals(1, lineCount(stale.get(6)));
+
+        // the next run picks up where this one stopped
+        newReaper(2, 3).reap();
+        assertFalse(cartExists(stale.get(6)));
+    }
+
+    @Test
+    void purgeBatch_ShouldDeleteAtMostOneBatch() {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            createCart(60 + i);
+        }
+        AbandonedCartReaper reaper = newReaper(3, 100);
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(MAX_AGE));
+
+        // When
+        Integer first = transactionTemplate.execute(status -> reaper.purgeBatch(cutoff));
+        Integer second = transactionTemplate.execute(status -> reaper.purgeBatch(cutoff));
+
+        // Then
+        assertEquals(3, first);
+        assertEquals(2, second);
+    }
+
+    @Test
+    void reap_ShouldSkipCartsLockedByAnotherTransaction() throws Exception {
+        // Given: a request holds the row lock of one stale cart
+        Long locked = createCart(50);
+        Long unlocked = createCart(40);
+        CountDownLatch lockHeld = new CountDownLatch(1);
+        CountDownLatch releaseLock = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> holder = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.queryForList("SELECT id FROM carts WHERE id = ? FOR UPDATE", Long.class, locked);
+                lockHeld.countDown();
+                try {
+                    assertTrue(releaseLock.await(30, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(lockHeld.await(30, TimeUnit.SECONDS));
+
+            // When: the reaper neither waits for the lock nor fails on it
+            newReaper(500, 100).reap();
+
+            // Then
+            assertTrue(cartExists(locked));
+            assertEquals(1, lineCount(locked));
+            assertFalse(cartExists(unlocked));
+
+            releaseLock.countDown();
+            holder.get(30, TimeUnit.SECONDS);
+        } finally {
+            releaseLock.countDown();
+            executor.shutdownNow();
+        }
+
+        // the skipped cart goes on a later run
+        newReaper(500, 100).reap();
+        assertFalse(cartExists(locked));
+    }
+}
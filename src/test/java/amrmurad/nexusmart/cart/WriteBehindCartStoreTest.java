@@ -0,0 +1,206 @@
+package amrmurad.nexusmart.cart;
+
+import amrmurad.nexusmart.entities.Cart;
+import amrmurad.nexusmart.entities.CartItem;
+import amrmurad.nexusmart.entities.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WriteBehindCartStoreTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @TempDir
+    Path journalDirectory;
+
+    private WriteBehindCartStore cartStore;
+
+    private final Supplier<Cart> noReload = () -> {
+        throw new AssertionError("cart should not be loaded from the database");
+    };
+
+    private WriteBehindCartStore newStore() {
+        WriteBehindCartStore store = new WriteBehindCartStore(
+                jdbcTemplate, transactionTemplate, "memory", journalDirectory, Duration.ofMinutes(30), Duration.ZERO);
+        store.recover();
+        return store;
+    }
+
+    private Cart createTestCart(Long cartId, Long productId, int quantity) {
+        Product product = new Product();
+        product.setId(productId);
+        CartItem item = new CartItem();
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        Cart cart = new Cart();
+        cart.setId(cartId);
+        cart.getItems().add(item);
+        return cart;
+    }
+
+    @BeforeEach
+    void setUp() {
+        cartStore = newStore();
+    }
+
+    @Test
+    void add_LoadsCartOnceThenWorksInMemory() {
+        CartLines lines = cartStore.add(1L, 5L, 3, () -> createTestCart(9L, 5L, 2));
+        assertEquals(9L, lines.cartId());
+        assertEquals(5, lines.totalQuantity());
+
+        lines = cartStore.add(1L, 7L, 1, noReload);
+        lines = cartStore.setQuantity(1L, 5L, 0, noReload);
+
+        assertFalse(lines.contains(5L));
+        assertTrue(lines.contains(7L));
+        assertEquals(1, lines.totalQuantity());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void recover_ReplaysJournalWithLatestStatePerUser() {
+        cartStore.add(1L, 5L, 3, () -> createTestCart(9L, 5L, 2));
+        cartStore.remove(1L, 5L, noReload);
+        cartStore.add(1L, 6L, 2, noReload);
+        cartStore.add(2L, 8L, 4, () -> createTestCart(10L, 8L, 1));
+
+        WriteBehindCartStore restarted = newStore();
+
+        CartLines first = restarted.get(1L, noReload);
+        assertEquals(9L, first.cartId());
+        assertFalse(first.contains(5L));
+        assertEquals(2, first.totalQuantity());
+        assertEquals(5, restarted.get(2L, noReload).totalQuantity());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_DatabaseFailure_KeepsCartDirtyAndJournaled() throws IOException {
+        cartStore.add(1L, 5L, 3, () -> createTestCart(9L, 5L, 2));
+        doThrow(new DataAccessResourceFailureException("down")).when(transactionTemplate).executeWithoutResult(any());
+
+        cartStore.flush();
+
+        // the sealed segment survives the failed flush, and the cart is retried by the next one
+        assertEquals(2, countFiles());
+        reset(transactionTemplate);
+        doAnswer(invocation -> {
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        cartStore.flush();
+
+        verify(jdbcTemplate, times(3)).batchUpdate(anyString(), anyList(), anyInt(), any());
+        assertEquals(1, countFiles());
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(journalDirectory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void subtractAfterCommit_WithoutTransaction_KeepsOnlyLinesAddedSinceCheckoutAcrossRestart() {
+        cartStore.add(1L, 5L, 3, () -> createTestCart(9L, 5L, 2));
+        // checkout ordered 5 x product 5, then the user added more before the cart was cleared
+        cartStore.add(1L, 5L, 1, noReload);
+        cartStore.add(1L, 6L, 2, noReload);
+
+        cartStore.subtractAfterCommit(1L, Map.of(5L, 5));
+
+        CartLines lines = newStore().get(1L, noReload);
+        assertEquals(2, lines.lines().length);
+        assertTrue(lines.contains(5L)); // 1 left of product 5
+        assertTrue(lines.contains(6L));
+        assertEquals(3, lines.totalQuantity());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushUser_WhileScheduledFlushWritesOtherCarts_DoesNotWait() throws Exception {
+        cartStore.add(1L, 5L, 3, () -> createTestCart(9L, 5L, 2));
+        CountDownLatch batchStarted = new CountDownLatch(1);
+        CountDownLatch releaseBatch = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            if (Thread.currentThread().getName().equals("scheduled-flush")) {
+                batchStarted.countDown();
+                assertTrue(releaseBatch.await(10, TimeUnit.SECONDS));
+            }
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        Thread scheduled = new Thread(cartStore::flush, "scheduled-flush");
+        scheduled.start();
+        assertTrue(batchStarted.await(10, TimeUnit.SECONDS));
+
+        // a cart that changed after the batch was collected is written while the batch is still open
+        cartStore.add(2L, 8L, 1, () -> createTestCart(10L, 8L, 1));
+        CompletableFuture<Void> checkoutFlush = CompletableFuture.runAsync(() -> cartStore.flush(2L));
+        checkoutFlush.get(5, TimeUnit.SECONDS);
+
+        releaseBatch.countDown();
+        scheduled.join(10_000);
+        verify(transactionTemplate, times(2)).executeWithoutResult(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_WhileACartWriteIsInFlight_KeepsSealedSegments() throws Exception {
+        cartStore.add(1L, 5L, 3, () -> createTestCart(9L, 5L, 2));
+        CountDownLatch writeStarted = new CountDownLatch(1);
+        CountDownLatch releaseWrite = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            if (Thread.currentThread().getName().equals("checkout")) {
+                writeStarted.countDown();
+                assertTrue(releaseWrite.await(10, TimeUnit.SECONDS));
+            }
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        Thread checkout = new Thread(() -> cartStore.flush(1L), "checkout");
+        checkout.start();
+        assertTrue(writeStarted.await(10, TimeUnit.SECONDS));
+
+        // the checkout write may still roll back, so the scheduled flush must not drop its journal records
+        cartStore.flush();
+        assertEquals(2, countFiles());
+
+        releaseWrite.countDown();
+        checkout.join(10_000);
+        cartStore.flush();
+        assertEquals(1, countFiles());
+    }
+}
@@ -0,0 +1,125 @@
+package amrmurad.nexusmart.catalog;
+
+import amrmurad.nexusmart.DTOs.productDTOs.ProductSummary;
+import amrmurad.nexusmart.catalog.ProductVersionRegistry.ProductVersion;
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogSnapshotTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductCache productCache;
+
+    @Mock
+    private ProductVersionRegistry productVersionRegistry;
+
+    @TempDir
+    Path tempDir;
+
+    private Path snapshotPath;
+    private CatalogSnapshot catalogSnapshot;
+
+    private Product createTestProduct(Long id, String name, String description, Long version) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setDescription(description);
+        product.setPrice(new BigDecimal("19.99"));
+        product.setStockQuantity(7);
+        product.setVersion(version);
+        product.setCreatedAt(LocalDateTime.of(2024, 1, 2, 3, 4, 5));
+        product.setUpdatedAt(LocalDateTime.of(2024, 2, 3, 4, 5, 6));
+        return product;
+    }
+
+    @BeforeEach
+    void setUp() {
+        snapshotPath = tempDir.resolve("snapshots/catalog.snapshot");
+        catalogSnapshot = new CatalogSnapshot(productRepository, productCache, productVersionRegistry, true, snapshotPath);
+
+        when(productRepository.findBatchAfter(eq(0L), any())).thenReturn(List.of(
+                createTestProduct(1L, "Café Table", "Solid oak", 3L),
+                createTestProduct(2L, "Lamp", null, 1L)
+        ));
+        catalogSnapshot.write();
+    }
+
+    @Test
+    void write_ThenFindById_RoundTripsAllFields() {
+        assertTrue(Files.isRegularFile(snapshotPath));
+        assertTrue(catalogSnapshot.isLoaded());
+
+        Product product = catalogSnapshot.findById(1L).orElseThrow();
+        assertEquals("Café Table", product.getName());
+        assertEquals("Solid oak", product.getDescription());
+        assertEquals(new BigDecimal("19.99"), product.getPrice());
+        assertEquals(7, product.getStockQuantity());
+        assertEquals(3L, product.getVersion());
+        assertEquals(LocalDateTime.of(2024, 1, 2, 3, 4, 5), product.getCreatedAt());
+        assertEquals(LocalDateTime.of(2024, 2, 3, 4, 5, 6), product.getUpdatedAt());
+
+        assertNull(catalogSnapshot.findById(2L).orElseThrow().getDescription());
+        assertTrue(catalogSnapshot.findById(3L).isEmpty());
+    }
+
+    @Test
+    void findSummaries_SkipsUnknownIds() {
+        List<ProductSummary> summaries = catalogSnapshot.findSummaries(List.of(2L, 42L));
+
+        assertEquals(1, summaries.size());
+        assertEquals("Lamp", summaries.get(0).name());
+        assertEquals(1L, summaries.get(0).version());
+    }
+
+    @Test
+    void loadAndWarm_WarmsOnlyProductsWhoseVersionIsCurrent() {
+        when(productVersionRegistry.find(1L)).thenReturn(Optional.of(new ProductVersion(1L, 3L, 0)));
+        when(productVersionRegistry.find(2L)).thenReturn(Optional.of(new ProductVersion(2L, 2L, 0)));
+
+        catalogSnapshot.loadAndWarm();
+
+        ArgumentCaptor<Product> warmed = ArgumentCaptor.forClass(Product.class);
+        verify(productCache).warm(warmed.capture());
+        assertEquals(1L, warmed.getValue().getId());
+    }
+
+    @Test
+    void write_DatabaseUnavailable_KeepsPreviousSnapshot() throws IOException {
+        when(productRepository.findBatchAfter(anyLong(), any()))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+
+        catalogSnapshot.write();
+
+        assertTrue(catalogSnapshot.findById(1L).isPresent());
+        try (Stream<Path> files = Files.list(snapshotPath.getParent())) {
+            assertEquals(1, files.count());
+        }
+    }
+}
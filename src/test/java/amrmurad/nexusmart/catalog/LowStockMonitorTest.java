@@ -0,0 +1,209 @@
+package amrmurad.nexusmart.catalog;
+
+import amrmurad.nexusmart.DTOs.productDTOs.LowStockAlert;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductStockView;
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.enums.StockAlertDirection;
+import amrmurad.nexusmart.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LowStockMonitorTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private final List<RecordingEmitter> emitters = new CopyOnWriteArrayList<>();
+    private volatile boolean clientsBroken;
+
+    private LowStockMonitor lowStockMonitor;
+
+    // Captures the payloads sent to a subscriber instead of writing them to a response
+    private class RecordingEmitter extends SseEmitter {
+        private final List<Object> payloads = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (clientsBroken) {
+                throw new IOException("client went away");
+            }
+            builder.build().stream()
+                    .map(DataWithMediaType::getData)
+                    .filter(data -> !(data instanceof String))
+                    .forEach(payloads::add);
+        }
+
+        private List<LowStockAlert> alerts() {
+            return payloads.stream().filter(LowStockAlert.class::isInstance).map(LowStockAlert.class::cast).toList();
+        }
+    }
+
+    private ProductStockView stockView(Long id, Integer stock) {
+        return new ProductStockView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getStockQuantity() {
+                return stock;
+            }
+
+            @Override
+            public Long getVersion() {
+                return 1L;
+            }
+        };
+    }
+
+    private ProductChangedEvent stockChanged(Long id, int stock) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setStockQuantity(stock);
+        return ProductChangedEvent.upserted(product);
+    }
+
+    private ProductChangedEvent stockChanged(Long id, int stock, long version) {
+        ProductChangedEvent event = stockChanged(id, stock);
+        event.product().setVersion(version);
+        return event;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.sleep(5);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        lowStockMonitor = new LowStockMonitor(productRepository, 100, Duration.ofMinutes(30)) {
+            @Override
+            SseEmitter newEmitter() {
+                RecordingEmitter emitter = new RecordingEmitter();
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+        when(productRepository.findStockBelow(100)).thenReturn(List.of(stockView(1L, 3), stockView(2L, 40)));
+        lowStockMonitor.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        lowStockMonitor.shutdown();
+    }
+
+    @Test
+    void findIdsBelow_ShouldServeThresholdsFromMemoryLowestStockFirst() {
+        lowStockMonitor.onProductChanged(stockChanged(3L, 1));
+        lowStockMonitor.onProductChanged(stockChanged(2L, 150));
+
+        assertEquals(List.of(3L, 1L), lowStockMonitor.findIdsBelow(50));
+        assertTrue(lowStockMonitor.canServe(100));
+        assertFalse(lowStockMonitor.canServe(101));
+    }
+
+    @Test
+    void onProductChanged_WithOlderVersionArrivingLate_ShouldKeepTheNewerStock() {
+        lowStockMonitor.onProductChanged(stockChanged(1L, 2, 3L));
+        lowStockMonitor.onProductChanged(stockChanged(1L, 150, 2L));
+        lowStockMonitor.onProductChanged(stockChanged(3L, 200, 5L));
+        lowStockMonitor.onProductChanged(stockChanged(3L, 4, 4L));
+
+        assertEquals(List.of(1L), lowStockMonitor.findIdsBelow(10));
+    }
+
+    @Test
+    void subscribe_ShouldSendSnapshotThenOnlyThresholdCrossings() throws Exception {
+        lowStockMonitor.subscribe(5);
+        RecordingEmitter emitter = emitters.get(0);
+
+        lowStockMonitor.onProductChanged(stockChanged(1L, 10));   // recovers
+        lowStockMonitor.onProductChanged(stockChanged(1L, 20));   // still above, no alert
+        lowStockMonitor.onProductChanged(stockChanged(2L, 4));    // drops below
+        lowStockMonitor.onProductChanged(ProductChangedEvent.deleted(2L));
+
+        await(() -> emitter.payloads.size() == 4);
+        assertEquals(List.of(1L), emitter.payloads.get(0));
+        assertEquals(List.of(StockAlertDirection.RECOVERED, StockAlertDirection.BELOW_THRESHOLD, StockAlertDirection.REMOVED),
+                emitter.alerts().stream().map(LowStockAlert::getDirection).toList());
+        assertEquals(List.of(1L, 2L, 2L), emitter.alerts().stream().map(LowStockAlert::getProductId).toList());
+    }
+
+    @Test
+    void subscribe_WhenClientGoesAway_ShouldDropSubscription() throws Exception {
+        clientsBroken = true;
+
+        lowStockMonitor.subscribe(5);
+
+        await(() -> lowStockMonitor.subscriberCount() == 0);
+    }
+
+    @Test
+    void subscribe_WithThresholdAboveCeiling_ShouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> lowStockMonitor.subscribe(101));
+        assertEquals(0, lowStockMonitor.subscriberCount());
+    }
+
+    @Test
+    void onProductChanged_ConcurrentChangesOfOneProduct_ShouldAlternateAlertsWithoutDuplicates() throws Exception {
+        lowStockMonitor.subscribe(5);
+        RecordingEmitter emitter = emitters.get(0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        lowStockMonitor.onProductChanged(stockChanged(1L, ThreadLocalRandom.current().nextBoolean() ? 1 : 50));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        boolean endsLow = lowStockMonitor.findIdsBelow(5).contains(1L);
+        // a later subscriber's snapshot is queued behind every alert, once it arrives all alerts are out
+        lowStockMonitor.subscribe(5);
+        await(() -> emitters.get(1).payloads.size() == 1);
+        List<LowStockAlert> alerts = emitter.alerts();
+
+        // product 1 started below the threshold, so an odd number of alerts means it recovered in the end
+
+        for (int i = 0; i < alerts.size(); i++) {
+            StockAlertDirection expected = i % 2 == 0 ? StockAlertDirection.RECOVERED : StockAlertDirection.BELOW_THRESHOLD;
+            assertEquals(expected, alerts.get(i).getDirection(), "alert " + i);
+        }
+        assertEquals(endsLow, alerts.size() % 2 == 0);
+    }
+}
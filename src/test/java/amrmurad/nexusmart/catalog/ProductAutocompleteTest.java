@@ -0,0 +1,227 @@
+package amrmurad.nexusmart.catalog;
+
+import amrmurad.nexusmart.DTOs.productDTOs.ProductNameView;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductSalesView;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductSuggestion;
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.repository.OrderItemsRepository;
+import amrmurad.nexusmart.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductAutocompleteTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private OrderItemsRepository orderItemsRepository;
+
+    @InjectMocks
+    private ProductAutocomplete productAutocomplete;
+
+    private ProductNameView name(Long id, String name) {
+        return new ProductNameView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+        };
+    }
+
+    private ProductSalesView sales(Integer productId, Long quantity) {
+        return new ProductSalesView() {
+            @Override
+            public Integer getProductId() {
+                return productId;
+            }
+
+            @Override
+            public Long getQuantity() {
+                return quantity;
+            }
+        };
+    }
+
+    private List<Long> ids(List<ProductSuggestion> suggestions) {
+        return suggestions.stream().map(ProductSuggestion::getId).toList();
+    }
+
+    @BeforeEach
+    void setUp() {
+        List<ProductNameView> names = new ArrayList<>();
+        for (long id = 1; id <= 15; id++) {
+            names.add(name(id, "Laptop " + id));
+        }
+        names.add(name(100L, "Lamp"));
+        when(productRepository.findAllNames()).thenReturn(names);
+        when(orderItemsRepository.sumQuantityByProduct()).thenReturn(List.of(sales(12, 50L), sales(100, 5L)));
+        productAutocomplete.rebuild();
+    }
+
+    @Test
+    void suggest_RanksBySalesThenShorterName() {
+        assertEquals(List.of(12L, 100L, 1L), ids(productAutocomplete.suggest("la", 3)));
+        assertEquals(List.of(12L, 1L, 2L), ids(productAutocomplete.suggest("LAPT", 3)));
+    }
+
+    @Test
+    void suggest_UnknownOrBlankPrefix_ReturnsEmpty() {
+        assertTrue(productAutocomplete.suggest("zz", 5).isEmpty());
+        assertTrue(productAutocomplete.suggest("   ", 5).isEmpty());
+    }
+
+    @Test
+    void onProductChanged_Deleted_RefillsSuggestionsFromSubtree() {
+        productAutocomplete.onProductChanged(ProductChangedEvent.deleted(12L));
+
+        List<Long> suggestions = ids(productAutocomplete.suggest("lap", ProductAutocomplete.MAX_SUGGESTIONS));
+        assertEquals(ProductAutocomplete.MAX_SUGGESTIONS, suggestions.size());
+        assertFalse(suggestions.contains(12L));
+        assertEquals(10L, suggestions.get(9));
+    }
+
+    @Test
+    void onProductChanged_Renamed_MovesToNewPrefix() {
+        Product product = new Product();
+        product.setId(12L);
+        product.setName("Desk");
+
+        productAutocomplete.onProductChanged(ProductChangedEvent.upserted(product));
+
+        assertFalse(ids(productAutocomplete.suggest("la", 10)).contains(12L));
+        assertEquals(List.of(12L), ids(productAutocomplete.suggest("de", 10)));
+    }
+
+    @Test
+    void applyPendingViews_PromotesViewedProduct() {
+        for (int i = 0; i < 60; i++) {
+            productAutocomplete.recordView(15L);
+        }
+
+        productAutocomplete.applyPendingViews();
+
+        assertEquals(List.of(15L, 12L, 100L), ids(productAutocomplete.suggest("la", 3)));
+    }
+
+    @Test
+    void applyPendingViews_WhileViewsAreRecorded_ShouldCountEveryView() throws Exception {
+        int threads = 4;
+        int viewsPerThread = 50_000;
+        AtomicBoolean recording = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            Future<?> applier = executor.submit(() -> {
+                while (recording.get()) {
+                    productAutocomplete.applyPendingViews();
+                }
+            });
+            List<Future<?>> recorders = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                recorders.add(executor.submit(() -> {
+                    for (int i = 0; i < viewsPerThread; i++) {
+                        productAutocomplete.recordView(15L);
+                    }
+                }));
+            }
+            for (Future<?> recorder : recorders) {
+                recorder.get(30, TimeUnit.SECONDS);
+            }
+            recording.set(false);
+            applier.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        productAutocomplete.applyPendingViews();
+
+        assertEquals((long) threads * viewsPerThread, productAutocomplete.popularityOf(15L));
+    }
+
+    @Test
+    void suggest_PrefixEndingInsideACollapsedEdge_ReturnsTheProductsBelowIt() {
+        assertEquals(List.of(100L), ids(productAutocomplete.suggest("lam", 3)));
+        assertEquals(List.of(12L, 1L, 2L), ids(productAutocomplete.suggest("lapto", 3)));
+        assertTrue(productAutocomplete.suggest("lamb", 3).isEmpty());
+    }
+
+    @Test
+    void rebuild_ShouldCollapseSingleChildChains() {
+        // root, "la", "mp", "ptop ", then "1" to "9" with "0" to "5" below "1"
+        assertEquals(19, productAutocomplete.nodeCount());
+    }
+
+    @Test
+    void onProductChanged_Deleted_ShouldPruneAndMergeNodes() {
+        productAutocomplete.onProductChanged(ProductChangedEvent.deleted(100L));
+        for (long id = 10; id <= 15; id++) {
+            productAutocomplete.onProductChanged(ProductChangedEvent.deleted(id));
+        }
+
+        // root, "laptop " and the nine digits
+        assertEquals(11, productAutocomplete.nodeCount());
+        assertEquals(List.of(1L, 2L), ids(productAutocomplete.suggest("l", 2)));
+    }
+
+    @Test
+    void suggest_AfterRandomChanges_ShouldMatchAScanOfAllNames() {
+        Random random = new Random(42);
+        String[] words = {"lap", "laptop", "lamp", "lamps", "la", "desk", "desktop", "dock"};
+        Map<Long, String> names = new HashMap<>();
+        for (long id = 1; id <= 15; id++) {
+            names.put(id, "laptop " + id);
+        }
+        names.put(100L, "lamp");
+
+        for (int step = 0; step < 2_000; step++) {
+            long id = 200 + random.nextInt(60);
+            if (random.nextInt(3) == 0) {
+                productAutocomplete.onProductChanged(ProductChangedEvent.deleted(id));
+                names.remove(id);
+            } else {
+                String name = words[random.nextInt(words.length)] + (random.nextBoolean() ? "" : " " + random.nextInt(20));
+                Product product = new Product();
+                product.setId(id);
+                product.setName(name);
+                productAutocomplete.onProductChanged(ProductChangedEvent.upserted(product));
+                names.put(id, name);
+            }
+        }
+
+        for (String prefix : List.of("l", "la", "lap", "lamp", "lamps", "laptop 1", "d", "desk", "dock 1", "x")) {
+            List<Long> expected = names.entrySet().stream()
+                    .filter(entry -> entry.getValue().startsWith(prefix))
+                    .sorted(Comparator.<Map.Entry<Long, String>>comparingLong(entry -> -productAutocomplete.popularityOf(entry.getKey()))
+                            .thenComparingInt(entry -> entry.getValue().length())
+                            .thenComparing(Map.Entry::getKey))
+                    .limit(ProductAutocomplete.MAX_SUGGESTIONS)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            assertEquals(expected, ids(productAutocomplete.suggest(prefix, ProductAutocomplete.MAX_SUGGESTIONS)), prefix);
+        }
+    }
+}
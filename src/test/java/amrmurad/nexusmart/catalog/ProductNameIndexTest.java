@@ -0,0 +1,101 @@
+package amrmurad.nexusmart.catalog;
+
+import amrmurad.nexusmart.DTOs.productDTOs.ProductNameView;
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductNameIndexTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @InjectMocks
+    private ProductNameIndex productNameIndex;
+
+    private ProductNameView view(Long id, String name) {
+        return new ProductNameView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+        };
+    }
+
+    private Product createTestProduct(Long id, String name) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        return product;
+    }
+
+    @BeforeEach
+    void setUp() {
+        when(productRepository.findAllNames()).thenReturn(List.of(
+                view(1L, "Wireless Mouse"),
+                view(2L, "Mouse"),
+                view(3L, "Mousepad XL"),
+                view(4L, "Gaming Keyboard"),
+                view(5L, "Crème Brûlée Torch")
+        ));
+        productNameIndex.rebuild();
+    }
+
+    @Test
+    void search_ShouldRankExactThenPrefixThenWordStart() {
+        List<Long> result = productNameIndex.search("mouse", 10);
+
+        assertEquals(List.of(2L, 3L, 1L), result);
+    }
+
+    @Test
+    void search_ShouldMatchInsideWordsAndIgnoreCaseAndAccents() {
+        assertEquals(List.of(4L), productNameIndex.search("BOARD", 10));
+        assertEquals(List.of(5L), productNameIndex.search("creme brulee", 10));
+    }
+
+    @Test
+    void search_ShouldRequireTheWholeQueryNotJustSharedTrigrams() {
+        assertTrue(productNameIndex.search("mouse keyboard", 10).isEmpty());
+    }
+
+    @Test
+    void search_WithShortQuery_ShouldFallBackToScanningNames() {
+        assertEquals(List.of(3L), productNameIndex.search("xl", 10));
+    }
+
+    @Test
+    void onProductChanged_ShouldReindexRenamedAndDropDeletedProducts() {
+        productNameIndex.onProductChanged(ProductChangedEvent.upserted(createTestProduct(4L, "Gaming Mouse")));
+        productNameIndex.onProductChanged(ProductChangedEvent.deleted(2L));
+
+        assertEquals(List.of(3L, 4L, 1L), productNameIndex.search("mouse", 10));
+        assertTrue(productNameIndex.search("keyboard", 10).isEmpty());
+    }
+
+    @Test
+    void onProductChanged_WithUnchangedName_ShouldKeepTheProductIndexed() {
+        Product restocked = createTestProduct(2L, "  MOUSE ");
+        restocked.setStockQuantity(0);
+
+        productNameIndex.onProductChanged(ProductChangedEvent.upserted(restocked));
+
+        assertEquals(List.of(2L, 3L, 1L), productNameIndex.search("mouse", 10));
+    }
+}
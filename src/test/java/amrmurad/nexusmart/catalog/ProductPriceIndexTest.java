@@ -0,0 +1,122 @@
+package amrmurad.nexusmart.catalog;
+
+import amrmurad.nexusmart.DTOs.productDTOs.ProductPriceView;
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductPriceIndexTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @InjectMocks
+    private ProductPriceIndex productPriceIndex;
+
+    private ProductPriceView view(Long id, String price) {
+        return new ProductPriceView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public BigDecimal getPrice() {
+                return new BigDecimal(price);
+            }
+        };
+    }
+
+    private Product createTestProduct(Long id, String price) {
+        Product product = new Product();
+        product.setId(id);
+        product.setPrice(new BigDecimal(price));
+        return product;
+    }
+
+    @BeforeEach
+    void setUp() {
+        when(productRepository.findAllPrices()).thenReturn(List.of(
+                view(1L, "10.00"),
+                view(2L, "5.50"),
+                view(3L, "10.00"),
+                view(4L, "25.99"),
+                view(5L, "99.99")
+        ));
+        productPriceIndex.rebuild();
+    }
+
+    @Test
+    void findIdsInRange_ShouldIncludeBothBoundsOrderedByPriceThenId() {
+        List<Long> result = productPriceIndex.findIdsInRange(new BigDecimal("5.50"), new BigDecimal("25.99"), 0, 10);
+
+        assertEquals(List.of(2L, 1L, 3L, 4L), result);
+    }
+
+    @Test
+    void findIdsInRange_ShouldApplyOffsetAndLimit() {
+        List<Long> result = productPriceIndex.findIdsInRange(BigDecimal.ZERO, new BigDecimal("1000"), 1, 2);
+
+        assertEquals(List.of(1L, 3L), result);
+    }
+
+    @Test
+    void findIdsInRange_WithNoProductsInRange_ShouldReturnEmptyList() {
+        assertTrue(productPriceIndex.findIdsInRange(new BigDecimal("26"), new BigDecimal("99.98"), 0, 10).isEmpty());
+    }
+
+    @Test
+    void onProductChanged_ShouldMoveRepricedProductsAndDropDeletedOnes() {
+        productPriceIndex.onProductChanged(ProductChangedEvent.upserted(createTestProduct(5L, "7.25")));
+        productPriceIndex.onProductChanged(ProductChangedEvent.upserted(createTestProduct(6L, "10.00")));
+        productPriceIndex.onProductChanged(ProductChangedEvent.deleted(1L));
+
+        List<Long> result = productPriceIndex.findIdsInRange(BigDecimal.ZERO, new BigDecimal("20"), 0, 10);
+
+        assertEquals(List.of(2L, 5L, 3L, 6L), result);
+    }
+
+    @Test
+    void onProductChanged_WithStockOnlyEvent_ShouldLeaveTheIndexAlone() {
+        // the event's price is never looked at, a stock write cannot have changed it
+        productPriceIndex.onProductChanged(ProductChangedEvent.stockChanged(createTestProduct(1L, "999.00")));
+
+        assertEquals(List.of(2L, 1L, 3L), productPriceIndex.findIdsInRange(BigDecimal.ZERO, new BigDecimal("20"), 0, 10));
+    }
+
+    @Test
+    void onProductChanged_ManyChangesBetweenReads_ShouldBeMergedInOnePass() {
+        for (long id = 100; id < 10_100; id++) {
+            productPriceIndex.onProductChanged(ProductChangedEvent.upserted(createTestProduct(id, "50.00")));
+        }
+        // the last change of a product wins, however often it changed since the previous read
+        productPriceIndex.onProductChanged(ProductChangedEvent.upserted(createTestProduct(100L, "1.00")));
+        productPriceIndex.onProductChanged(ProductChangedEvent.deleted(101L));
+        productPriceIndex.onProductChanged(ProductChangedEvent.upserted(createTestProduct(2L, "60.00")));
+
+        assertEquals(List.of(100L, 1L, 3L), productPriceIndex.findIdsInRange(BigDecimal.ZERO, new BigDecimal("20"), 0, 10));
+        assertEquals(List.of(102L, 103L), productPriceIndex.findIdsInRange(new BigDecimal("50"), new BigDecimal("50"), 0, 2));
+        assertEquals(List.of(10_099L, 2L, 5L),
+                productPriceIndex.findIdsInRange(new BigDecimal("50"), new BigDecimal("100"), 9_997, 10));
+    }
+
+    @Test
+    void findIdsInRange_WithHugeOffsetOrPrices_ShouldClampInsteadOfFailing() {
+        assertTrue(productPriceIndex.findIdsInRange(BigDecimal.ZERO, new BigDecimal("1000"), Integer.MAX_VALUE, 10).isEmpty());
+        assertEquals(List.of(2L, 1L, 3L, 4L, 5L),
+                productPriceIndex.findIdsInRange(new BigDecimal("-1E+30"), new BigDecimal("1E+30"), 0, 10));
+        assertTrue(productPriceIndex.findIdsInRange(new BigDecimal("1E+30"), new BigDecimal("1E+31"), 0, 10).isEmpty());
+    }
+}
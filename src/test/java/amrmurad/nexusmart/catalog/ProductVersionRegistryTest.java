@@ -0,0 +1,50 @@
+package amrmurad.nexusmart.catalog;
+
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductVersionRegistryTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @InjectMocks
+    private ProductVersionRegistry productVersionRegistry;
+
+    private Product createTestProduct(Long id, long version) {
+        Product product = new Product();
+        product.setId(id);
+        product.setVersion(version);
+        product.setUpdatedAt(LocalDateTime.of(2025, 1, 1, 12, 0).plusMinutes(version));
+        return product;
+    }
+
+    @Test
+    void onProductChanged_WithOlderVersionArrivingLate_ShouldKeepTheNewerVersion() {
+        productVersionRegistry.onProductChanged(ProductChangedEvent.stockChanged(createTestProduct(1L, 7)));
+        productVersionRegistry.onProductChanged(ProductChangedEvent.stockChanged(createTestProduct(1L, 6)));
+
+        assertEquals(7L, productVersionRegistry.find(1L).orElseThrow().version());
+    }
+
+    @Test
+    void onProductChanged_ShouldMoveToNewerVersionsAndForgetDeletedProducts() {
+        productVersionRegistry.onProductChanged(ProductChangedEvent.upserted(createTestProduct(1L, 1)));
+        productVersionRegistry.onProductChanged(ProductChangedEvent.upserted(createTestProduct(1L, 2)));
+        productVersionRegistry.onProductChanged(ProductChangedEvent.upserted(createTestProduct(2L, 1)));
+        productVersionRegistry.onProductChanged(ProductChangedEvent.deleted(2L));
+
+        assertEquals("\"1-2\"", productVersionRegistry.find(1L).orElseThrow().eTag());
+        assertTrue(productVersionRegistry.find(2L).isEmpty());
+    }
+}
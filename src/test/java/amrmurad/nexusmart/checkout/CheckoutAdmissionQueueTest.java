@@ -0,0 +1,196 @@
+package amrmurad.nexusmart.checkout;
+
+import amrmurad.nexusmart.DTOs.orderDTOs.PlaceOrderResponse;
+import amrmurad.nexusmart.exceptions.orderExceptions.CheckoutQueueFullException;
+import amrmurad.nexusmart.exceptions.orderExceptions.CheckoutTimeoutException;
+import amrmurad.nexusmart.exceptions.orderExceptions.InsufficientStockException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckoutAdmissionQueueTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService callers = Executors.newFixedThreadPool(4);
+    private CheckoutAdmissionQueue admissionQueue;
+
+    private final PlaceOrderResponse placed = PlaceOrderResponse.builder().orderId(42L).build();
+
+    private CheckoutAdmissionQueue newQueue(boolean enabled, int capacity, Duration maxWait) {
+        admissionQueue = new CheckoutAdmissionQueue(meterRegistry, enabled, capacity, 1, maxWait);
+        admissionQueue.start();
+        return admissionQueue;
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        admissionQueue.shutdown();
+    }
+
+    @Test
+    void placeOrder_WhenDisabled_ShouldRunOnCallerThread() {
+        CheckoutAdmissionQueue queue = newQueue(false, 1, Duration.ofSeconds(5));
+        Thread caller = Thread.currentThread();
+
+        PlaceOrderResponse response = queue.placeOrder(() -> {
+            assertSame(caller, Thread.currentThread());
+            return placed;
+        });
+
+        assertSame(placed, response);
+    }
+
+    @Test
+    void placeOrder_WhenEnabled_ShouldRunOnWorkerAndPassFailuresThrough() {
+        CheckoutAdmissionQueue queue = newQueue(true, 10, Duration.ofSeconds(5));
+
+        assertSame(placed, queue.placeOrder(() -> {
+            assertTrue(Thread.currentThread().isVirtual());
+            return placed;
+        }));
+        assertThrows(InsufficientStockException.class, () -> queue.placeOrder(() -> {
+            throw new InsufficientStockException("Insufficient stock for products: [1]");
+        }));
+        assertEquals(1.0, meterRegistry.counter("nexusmart.checkout.admission.drained", "outcome", "placed").count());
+        assertEquals(1.0, meterRegistry.counter("nexusmart.checkout.admission.drained", "outcome", "failed").count());
+    }
+
+    @Test
+    void placeOrder_WhenQueueIsFull_ShouldRejectWithQueueDepth() throws Exception {
+        CheckoutAdmissionQueue queue = newQueue(true, 1, Duration.ofSeconds(10));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // the only worker is busy with the first order, the second one fills the queue
+        Future<PlaceOrderResponse> first = callers.submit(() -> queue.placeOrder(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return placed;
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<PlaceOrderResponse> second = callers.submit(() -> queue.placeOrder(() -> placed));
+        while (meterRegistry.get("nexusmart.checkout.admission.depth").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        CheckoutQueueFullException rejected =
+                assertThrows(CheckoutQueueFullException.class, () -> queue.placeOrder(() -> placed));
+        assertEquals(1, rejected.getQueueDepth());
+
+        release.countDown();
+        assertSame(placed, first.get(5, TimeUnit.SECONDS));
+        assertSame(placed, second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void placeOrder_WhenWaitRunsOut_ShouldGiveUpTicketWithoutRunningIt() throws Exception {
+        CheckoutAdmissionQueue queue = newQueue(true, 10, Duration.ofMillis(200));
+        CountDownLatch release = new CountDownLatch(1);
+        callers.submit(() -> queue.placeOrder(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return placed;
+        }));
+        CountDownLatch ranLate = new CountDownLatch(1);
+
+        while (meterRegistry.get("nexusmart.checkout.admission.wait").timer().count() < 1) {
+            Thread.onSpinWait();
+        }
+        assertThrows(CheckoutQueueFullException.class, () -> queue.placeOrder(() -> {
+            ranLate.countDown();
+            return placed;
+        }));
+
+        release.countDown();
+        assertFalse(ranLate.await(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void placeOrder_WhenTakenTicketOverrunsGracePeriod_ShouldStopWaiting() throws Exception {
+        CheckoutAdmissionQueue queue = newQueue(true, 10, Duration.ofMillis(200));
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // the worker holds the order past max-wait twice over, the caller lets go instead of waiting on it
+            assertThrows(CheckoutTimeoutException.class, () -> queue.placeOrder(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return placed;
+            }));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void placeOrder_WhenTakenTicketFinishesWithinGracePeriod_ShouldReturnIt() {
+        CheckoutAdmissionQueue queue = newQueue(true, 10, Duration.ofMillis(200));
+
+        assertSame(placed, queue.placeOrder(() -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return placed;
+        }));
+    }
+
+    @Test
+    void placeOrder_WhenWaitRunsOut_ShouldFreeTheQueueSlot() throws Exception {
+        CheckoutAdmissionQueue queue = newQueue(true, 1, Duration.ofMillis(200));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<PlaceOrderResponse> first = callers.submit(() -> queue.placeOrder(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return placed;
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // the given-up ticket leaves the queue, so the next caller is queued rather than turned away
+        assertThrows(CheckoutQueueFullException.class, () -> queue.placeOrder(() -> placed));
+        assertEquals(0.0, meterRegistry.get("nexusmart.checkout.admission.depth").gauge().value());
+        Future<PlaceOrderResponse> next = callers.submit(() -> queue.placeOrder(() -> placed));
+
+        release.countDown();
+        assertSame(placed, first.get(5, TimeUnit.SECONDS));
+        assertSame(placed, next.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void placeOrder_WhenCheckoutThrowsAnError_ShouldFailTheCallerAndKeepTheWorker() {
+        CheckoutAdmissionQueue queue = newQueue(true, 10, Duration.ofSeconds(5));
+
+        IllegalStateException failure = assertThrows(IllegalStateException.class, () -> queue.placeOrder(() -> {
+            throw new StackOverflowError();
+        }));
+
+        assertInstanceOf(StackOverflowError.class, failure.getCause());
+        assertSame(placed, queue.placeOrder(() -> placed));
+        assertEquals(1.0, meterRegistry.counter("nexusmart.checkout.admission.drained", "outcome", "failed").count());
+    }
+}
@@ -0,0 +1,235 @@
+package amrmurad.nexusmart.checkout;
+
+import amrmurad.nexusmart.DTOs.orderDTOs.PlaceOrderResponse;
+import amrmurad.nexusmart.exceptions.orderExceptions.CheckoutTimeoutException;
+import amrmurad.nexusmart.exceptions.orderExceptions.IdempotencyKeyConflictException;
+import amrmurad.nexusmart.exceptions.orderExceptions.InsufficientStockException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotentCheckoutTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private IdempotentCheckout idempotentCheckout;
+
+    private final AtomicInteger checkouts = new AtomicInteger();
+
+    private final PlaceOrderResponse placed = PlaceOrderResponse.builder()
+            .orderId(42L)
+            .paymentClientSecret("secret_123")
+            .paymentReference("pi_123")
+            .build();
+
+    @BeforeEach
+    void setUp() {
+        idempotentCheckout = new IdempotentCheckout(jdbcTemplate, new SimpleMeterRegistry(), 100,
+                Duration.ofHours(24), Duration.ofSeconds(10), Duration.ofMinutes(2));
+    }
+
+    private Supplier<PlaceOrderResponse> countingCheckout() {
+        return () -> {
+            checkouts.incrementAndGet();
+            return placed;
+        };
+    }
+
+    private void stubClaim(int rowCount) {
+        when(jdbcTemplate.update(startsWith("INSERT INTO idempotency_keys"), eq("1:key-1"))).thenReturn(rowCount);
+    }
+
+    @Test
+    void placeOrder_WhenReplayed_ShouldReturnOriginalResponseWithoutRunningCheckoutAgain() {
+        // Given
+        stubClaim(1);
+
+        // When
+        PlaceOrderResponse first = idempotentCheckout.placeOrder("key-1", 1, countingCheckout());
+        PlaceOrderResponse replay = idempotentCheckout.placeOrder("key-1", 1, countingCheckout());
+
+        // Then
+        assertSame(first, replay);
+        assertEquals(1, checkouts.get());
+        verify(jdbcTemplate).update(startsWith("UPDATE idempotency_keys SET order_id"),
+                eq(42L), eq("secret_123"), eq("pi_123"), eq("1:key-1"));
+    }
+
+    @Test
+    void placeOrder_SameKeyForAnotherUser_ShouldRunItsOwnCheckout() {
+        // Given
+        when(jdbcTemplate.update(startsWith("INSERT INTO idempotency_keys"), anyString())).thenReturn(1);
+
+        // When
+        idempotentCheckout.placeOrder("key-1", 1, countingCheckout());
+        idempotentCheckout.placeOrder("key-1", 2, countingCheckout());
+
+        // Then
+        assertEquals(2, checkouts.get());
+    }
+
+    @Test
+    void placeOrder_ConcurrentDuplicates_ShouldWaitForTheFirstRequest() throws Exception {
+        // Given
+        stubClaim(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<PlaceOrderResponse> slowCheckout = () -> {
+            checkouts.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return placed;
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            // When
+            Future<PlaceOrderResponse> first = executor.submit(() -> idempotentCheckout.placeOrder("key-1", 1, slowCheckout));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            List<Future<PlaceOrderResponse>> duplicates = List.of(
+                    executor.submit(() -> idempotentCheckout.placeOrder("key-1", 1, slowCheckout)),
+                    executor.submit(() -> idempotentCheckout.placeOrder("key-1", 1, slowCheckout)),
+                    executor.submit(() -> idempotentCheckout.placeOrder("key-1", 1, slowCheckout)));
+            release.countDown();
+
+            // Then
+            assertSame(placed, first.get(10, TimeUnit.SECONDS));
+            for (Future<PlaceOrderResponse> duplicate : duplicates) {
+                assertSame(placed, duplicate.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, checkouts.get());
+        verify(jdbcTemplate, times(1)).update(startsWith("INSERT INTO idempotency_keys"), eq("1:key-1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void placeOrder_WhenKeyWasCompletedEarlier_ShouldReplayStoredResponse() {
+        // Given: another instance, or this one before a restart, placed the order
+        stubClaim(0);
+        when(jdbcTemplate.query(startsWith("SELECT"), any(RowMapper.class), eq("1:key-1"))).thenReturn(List.of(placed));
+
+        // When
+        PlaceOrderResponse response = idempotentCheckout.placeOrder("key-1", 1, countingCheckout());
+
+        // Then
+        assertEquals(42L, response.getOrderId());
+        assertEquals(0, checkouts.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void placeOrder_WhenKeyIsInProgressElsewhere_ShouldThrowConflict() {
+        // Given
+        stubClaim(0);
+        when(jdbcTemplate.query(startsWith("SELECT"), any(RowMapper.class), eq("1:key-1"))).thenReturn(List.of());
+
+        // When & Then
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> idempotentCheckout.placeOrder("key-1", 1, countingCheckout()));
+        assertEquals(0, checkouts.get());
+    }
+
+    @Test
+    void placeOrder_WhenCheckoutFails_ShouldReleaseKeyForRetry() {
+        // Given
+        stubClaim(1);
+
+        // When
+        assertThrows(InsufficientStockException.class, () -> idempotentCheckout.placeOrder("key-1", 1, () -> {
+            throw new InsufficientStockException("Insufficient stock for products: [1]");
+        }));
+        PlaceOrderResponse retry = idempotentCheckout.placeOrder("key-1", 1, countingCheckout());
+
+        // Then
+        verify(jdbcTemplate).update(startsWith("DELETE FROM idempotency_keys"), eq("1:key-1"));
+        assertSame(placed, retry);
+        assertEquals(1, checkouts.get());
+    }
+
+    @Test
+    void placeOrder_WhenQueuedCheckoutOutlivesTheWaitAndIsRetried_ShouldNotPlaceASecondOrder() throws Exception {
+        // Given: the flash-sale worker is still placing the order when the caller gives up
+        stubClaim(1);
+        CheckoutAdmissionQueue admissionQueue = new CheckoutAdmissionQueue(new SimpleMeterRegistry(), true, 10, 1,
+                Duration.ofMillis(100));
+        admissionQueue.start();
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<PlaceOrderResponse> slowCheckout = () -> admissionQueue.placeOrder(() -> {
+            checkouts.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return placed;
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // When: the first attempt times out, the retry comes while the order is still being placed
+            assertThrows(CheckoutTimeoutException.class, () -> idempotentCheckout.placeOrder("key-1", 1, slowCheckout));
+            Future<PlaceOrderResponse> retry = executor.submit(() -> idempotentCheckout.placeOrder("key-1", 1, slowCheckout));
+            release.countDown();
+
+            // Then: the retry answers with the order the worker placed
+            assertSame(placed, retry.get(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+            admissionQueue.shutdown();
+        }
+        assertEquals(1, checkouts.get());
+        verify(jdbcTemplate, never()).update(startsWith("DELETE FROM idempotency_keys"), eq("1:key-1"));
+        verify(jdbcTemplate).update(startsWith("UPDATE idempotency_keys SET order_id"),
+                eq(42L), eq("secret_123"), eq("pi_123"), eq("1:key-1"));
+        assertSame(placed, idempotentCheckout.placeOrder("key-1", 1, countingCheckout()));
+        assertEquals(1, checkouts.get());
+    }
+
+    @Test
+    void placeOrder_WhenCheckoutFailsAfterTheCallerStoppedWaiting_ShouldReleaseKeyThen() {
+        // Given
+        stubClaim(1);
+        CompletableFuture<PlaceOrderResponse> stillRunning = new CompletableFuture<>();
+
+        // When
+        assertThrows(CheckoutTimeoutException.class, () -> idempotentCheckout.placeOrder("key-1", 1, () -> {
+            throw new CheckoutTimeoutException("Checkout is taking longer than expected", stillRunning);
+        }));
+        verify(jdbcTemplate, never()).update(startsWith("DELETE FROM idempotency_keys"), eq("1:key-1"));
+        stillRunning.completeExceptionally(new InsufficientStockException("Insufficient stock for products: [1]"));
+
+        // Then: only now can a retry run the checkout again
+        verify(jdbcTemplate).update(startsWith("DELETE FROM idempotency_keys"), eq("1:key-1"));
+        assertSame(placed, idempotentCheckout.placeOrder("key-1", 1, countingCheckout()));
+        assertEquals(1, checkouts.get());
+    }
+}
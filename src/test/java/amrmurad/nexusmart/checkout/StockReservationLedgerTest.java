@@ -0,0 +1,68 @@
+package amrmurad.nexusmart.checkout;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockReservationLedgerTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private StockReservationLedger newLedger(Duration ttl) {
+        return new StockReservationLedger(jdbcTemplate, ttl);
+    }
+
+    @Test
+    void hold_ShouldInsertOneRowExpiringAfterTheTtl() {
+        StockReservationLedger ledger = newLedger(Duration.ofMinutes(15));
+        LocalDateTime before = LocalDateTime.now();
+
+        ledger.hold(42L);
+
+        verify(jdbcTemplate).update(startsWith("INSERT INTO stock_reservations"), eq(42L),
+                argThat((Timestamp expiresAt) -> !expiresAt.toLocalDateTime().isBefore(before.plusMinutes(15))
+                        && expiresAt.toLocalDateTime().isBefore(before.plusMinutes(16))));
+    }
+
+    @Test
+    void commitAndRelease_ShouldReportWhetherTheyDeletedTheHold() {
+        StockReservationLedger ledger = newLedger(Duration.ofMinutes(15));
+        when(jdbcTemplate.update("DELETE FROM stock_reservations WHERE order_id = ?", 42L)).thenReturn(1, 0);
+
+        assertTrue(ledger.commit(42L));
+        assertFalse(ledger.release(42L));
+    }
+
+    @Test
+    void claimExpired_ShouldOnlyDeleteHoldsPastTheirExpiry() {
+        StockReservationLedger ledger = newLedger(Duration.ofMinutes(15));
+        when(jdbcTemplate.update(contains("expires_at <= ?"), eq(42L), any(Timestamp.class))).thenReturn(1);
+        when(jdbcTemplate.update(contains("expires_at <= ?"), eq(43L), any(Timestamp.class))).thenReturn(0);
+
+        assertTrue(ledger.claimExpired(42L));
+        // settled or claimed by another instance in the meantime
+        assertFalse(ledger.claimExpired(43L));
+    }
+
+    @Test
+    void findExpired_ShouldQueryTheTableOldestFirst() {
+        StockReservationLedger ledger = newLedger(Duration.ofMinutes(15));
+        when(jdbcTemplate.queryForList(contains("ORDER BY expires_at LIMIT ?"), eq(Long.class),
+                any(Timestamp.class), eq(500))).thenReturn(List.of(7L, 9L));
+
+        assertEquals(List.of(7L, 9L), ledger.findExpired(500));
+    }
+}
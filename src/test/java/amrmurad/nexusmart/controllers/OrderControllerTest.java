@@ -0,0 +1,61 @@
+package amrmurad.nexusmart.controllers;
+
+import amrmurad.nexusmart.checkout.CheckoutAdmissionQueue;
+import amrmurad.nexusmart.checkout.IdempotentCheckout;
+import amrmurad.nexusmart.exceptions.orderExceptions.CheckoutQueueFullException;
+import amrmurad.nexusmart.services.OrderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderControllerTest {
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private IdempotentCheckout idempotentCheckout;
+
+    @Mock
+    private CheckoutAdmissionQueue admissionQueue;
+
+    @InjectMocks
+    private OrderController orderController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(orderController).build();
+    }
+
+    // Tests for POST /api/orders/place/{userId}
+    @Test
+    void placeOrder_WhenCheckoutQueueIsFull_ShouldAnswer429WithDepthAndRetryAfter() throws Exception {
+        when(admissionQueue.placeOrder(any()))
+                .thenThrow(new CheckoutQueueFullException("Checkout is busy with 1000 waiting orders, please retry", 1000));
+        when(admissionQueue.getRetryAfter()).thenReturn(Duration.ofSeconds(30));
+
+        mockMvc.perform(post("/api/orders/place/1"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "30"))
+                .andExpect(jsonPath("$.queueDepth").value(1000))
+                .andExpect(jsonPath("$.retryAfterSeconds").value(30))
+                .andExpect(jsonPath("$.error").value("Checkout is busy with 1000 waiting orders, please retry"));
+        verifyNoInteractions(idempotentCheckout);
+    }
+}
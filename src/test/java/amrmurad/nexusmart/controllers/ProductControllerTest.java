@@ -0,0 +1,120 @@
+package amrmurad.nexusmart.controllers;
+
+import amrmurad.nexusmart.DTOs.productDTOs.ProductSummary;
+import amrmurad.nexusmart.catalog.LowStockMonitor;
+import amrmurad.nexusmart.catalog.ProductVersionRegistry;
+import amrmurad.nexusmart.catalog.ProductVersionRegistry.ProductVersion;
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.services.ProductImportService;
+import amrmurad.nexusmart.services.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductControllerTest {
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private ProductImportService productImportService;
+
+    @Mock
+    private LowStockMonitor lowStockMonitor;
+
+    @Mock
+    private ProductVersionRegistry productVersionRegistry;
+
+    @InjectMocks
+    private ProductController productController;
+
+    private MockMvc mockMvc;
+
+    private final List<ProductSummary> products = List.of(
+            new ProductSummary(1L, "Keyboard", new BigDecimal("49.99"), 10, LocalDateTime.now(), 3L),
+            new ProductSummary(2L, "Mouse", new BigDecimal("19.99"), 5, LocalDateTime.now(), 1L));
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(productController).build();
+    }
+
+    private Product createTestProduct() {
+        Product product = new Product();
+        product.setId(1L);
+        product.setName("Keyboard");
+        product.setPrice(new BigDecimal("49.99"));
+        product.setStockQuantity(10);
+        product.setVersion(3L);
+        product.setUpdatedAt(LocalDateTime.of(2025, 1, 1, 12, 0));
+        return product;
+    }
+
+    // Tests for GET /api/products/{id}
+    @Test
+    void getProduct_WithCurrentETag_ShouldAnswer304WithoutLoadingProduct() throws Exception {
+        when(productVersionRegistry.find(1L)).thenReturn(Optional.of(new ProductVersion(1L, 3L, 1_000L)));
+
+        mockMvc.perform(get("/api/products/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-3\""))
+                .andExpect(status().isNotModified());
+
+        verifyNoInteractions(productService);
+    }
+
+    @Test
+    void getProduct_WithStaleETag_ShouldReturnProductWithCurrentETag() throws Exception {
+        when(productVersionRegistry.find(1L)).thenReturn(Optional.of(new ProductVersion(1L, 3L, 1_000L)));
+        when(productService.getProductById(1L)).thenReturn(createTestProduct());
+
+        mockMvc.perform(get("/api/products/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-2\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1-3\""))
+                .andExpect(jsonPath("$.name").value("Keyboard"));
+    }
+
+    // Tests for the list endpoints
+    @Test
+    void searchProductByName_ShouldGiveEachFieldsetItsOwnETag() throws Exception {
+        when(productService.searchProductByName("k", null)).thenReturn(products);
+
+        String full = mockMvc.perform(get("/api/products/search").param("name", "k"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String sparse = mockMvc.perform(get("/api/products/search").param("name", "k").param("fields", "id,name"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].price").doesNotExist())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String reordered = mockMvc.perform(get("/api/products/search").param("name", "k").param("fields", "name,id"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertNotNull(full);
+        assertNotEquals(full, sparse);
+        assertEquals(sparse, reordered);
+
+        // a cached full body must not be revalidated for the sparse representation
+        mockMvc.perform(get("/api/products/search").param("name", "k").param("fields", "id,name")
+                        .header(HttpHeaders.IF_NONE_MATCH, full))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/search").param("name", "k").param("fields", "id,name")
+                        .header(HttpHeaders.IF_NONE_MATCH, sparse))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+}
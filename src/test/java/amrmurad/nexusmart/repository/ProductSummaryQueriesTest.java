@@ -0,0 +1,59 @@
+package amrmurad.nexusmart.repository;
+
+import amrmurad.nexusmart.DTOs.productDTOs.ProductSummary;
+import amrmurad.nexusmart.entities.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ProductSummaryQueriesTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final List<Long> createdIds = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() {
+        productRepository.deleteAllById(createdIds);
+    }
+
+    private Product createProduct(String name, String price) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(new BigDecimal(price));
+        product.setStockQuantity(1);
+        Product saved = productRepository.save(product);
+        createdIds.add(saved.getId());
+        return saved;
+    }
+
+    @Test
+    void findSummariesByPriceBetween_ShouldPageInTheQueryByPriceThenId() {
+        // Given: a price band no other test uses
+        Product first = createProduct("Range test A", "7777.01");
+        Product second = createProduct("Range test B", "7777.02");
+        Product third = createProduct("Range test C", "7777.02");
+        createProduct("Range test D", "7777.03");
+        createProduct("Range test E", "7777.10");
+
+        // When
+        List<ProductSummary> page = productRepository.findSummariesByPriceBetween(
+                new BigDecimal("7777.00"), new BigDecimal("7777.05"), 1, 2);
+        List<ProductSummary> past = productRepository.findSummariesByPriceBetween(
+                new BigDecimal("7777.00"), new BigDecimal("7777.05"), 4, 2);
+
+        // Then
+        assertEquals(List.of(second.getId(), third.getId()), page.stream().map(ProductSummary::id).toList());
+        assertTrue(past.isEmpty());
+        assertNotEquals(first.getId(), page.get(0).id());
+    }
+}
@@ -0,0 +1,129 @@
+package amrmurad.nexusmart.services;
+
+import amrmurad.nexusmart.DTOs.cartDTOs.CartResponse;
+import amrmurad.nexusmart.entities.Cart;
+import amrmurad.nexusmart.entities.CartItem;
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.entities.User;
+import amrmurad.nexusmart.enums.Role;
+import amrmurad.nexusmart.repository.CartRepository;
+import amrmurad.nexusmart.repository.ProductRepository;
+import amrmurad.nexusmart.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Counts the statements Hibernate really prepares, so lazy loads and eager @ManyToOne selects show up
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "nexusmart.cart.store=database",
+        "nexusmart.cart.reaper.enabled=false",
+        "nexusmart.catalog-snapshot.enabled=false"
+})
+class CartServiceQueryCountTest {
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User user;
+    private final List<Long> productIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String name = "cart-stats-" + UUID.randomUUID();
+        user = userRepository.save(User.builder()
+                .username(name)
+                .email(name + "@example.com")
+                .password("secret")
+                .role(Role.USER)
+                .build());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        cartRepository.findByUserId(user.getId()).ifPresent(cartRepository::delete);
+        productRepository.deleteAllById(productIds);
+        userRepository.delete(user);
+    }
+
+    private Product createProduct(String name, String price) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(new BigDecimal(price));
+        product.setStockQuantity(100);
+        Product saved = productRepository.save(product);
+        productIds.add(saved.getId());
+        return saved;
+    }
+
+    private void createCart(int lines) {
+        Cart cart = new Cart();
+        cart.setUser(user);
+        for (int i = 0; i < lines; i++) {
+            CartItem item = new CartItem();
+            item.setCart(cart);
+            item.setProduct(createProduct("Cart stats product " + i, "2.50"));
+            item.setQuantity(i + 1);
+            cart.getItems().add(item);
+        }
+        cart.setItemCount(lines * (lines + 1) / 2);
+        cartRepository.save(cart);
+    }
+
+    @Test
+    void getCartByUserId_WithManyLines_ShouldPrepareASingleStatement() {
+        // Given: enough lines that a per-item product load would be obvious
+        createCart(10);
+        statistics.clear();
+
+        // When
+        CartResponse result = cartService.getCartByUserId(user.getId());
+
+        // Then
+        assertEquals(10, result.getItems().size());
+        assertEquals(55, result.getTotalItems());
+        assertEquals(0, new BigDecimal("137.50").compareTo(result.getTotalAmount()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityFetchCount());
+        assertEquals(0, statistics.getCollectionFetchCount());
+    }
+
+    @Test
+    void getCartByUserId_WithOneLine_ShouldPrepareTheSameSingleStatement() {
+        // Given
+        createCart(1);
+        statistics.clear();
+
+        // When
+        cartService.getCartByUserId(user.getId());
+
+        // Then: the count does not grow with the number of lines
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
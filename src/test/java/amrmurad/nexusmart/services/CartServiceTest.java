@@ -1,10 +1,14 @@
 package amrmurad.nexusmart.services;
 
 import amrmurad.nexusmart.DTOs.cartDTOs.AddToCartRequest;
+import amrmurad.nexusmart.DTOs.cartDTOs.CartItemOperation;
 import amrmurad.nexusmart.DTOs.cartDTOs.CartItemResponse;
 import amrmurad.nexusmart.DTOs.cartDTOs.CartResponse;
 import amrmurad.nexusmart.DTOs.cartDTOs.UpdateCartItemRequest;
+import amrmurad.nexusmart.cart.WriteBehindCartStore;
+import amrmurad.nexusmart.catalog.ProductCache;
 import amrmurad.nexusmart.entities.*;
+import amrmurad.nexusmart.enums.CartOperationType;
 import amrmurad.nexusmart.exceptions.ProductNotFoundException;
 import amrmurad.nexusmart.repository.CartItemsRepository;
 import amrmurad.nexusmart.repository.CartRepository;
@@ -18,6 +22,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -40,6 +45,12 @@ class CartServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private ProductCache productCache;
+
+    @Mock
+    private WriteBehindCartStore cartStore;
+
     @InjectMocks
     private CartService cartService;
 
@@ -89,10 +100,9 @@ class CartServiceTest {
         CartItem item1 = createTestCartItem(1L, existingCart, product1, 2);
         CartItem item2 = createTestCartItem(2L, existingCart, product2, 1);
 
-        List<CartItem> cartItems = List.of(item1, item2);
+        existingCart.setItems(new ArrayList<>(List.of(item1, item2)));
 
-        when(cartRepository.findByUserId(userId)).thenReturn(Optional.of(existingCart));
-        when(cartItemRepository.findByCartId(cartId)).thenReturn(cartItems);
+        when(cartRepository.findWithItemsByUserId(userId)).thenReturn(Optional.of(existingCart));
 
         // When
         CartResponse result = cartService.getCartByUserId(userId);
@@ -104,10 +114,10 @@ class CartServiceTest {
         assertEquals(3, result.getTotalItems()); // 2 + 1
         assertEquals(BigDecimal.valueOf(35.00), result.getTotalAmount()); // (10*2) + (15*1)
 
-        // Verify repository interactions
-        verify(cartRepository).findByUserId(userId);
-        verify(cartItemRepository).findByCartId(cartId);
+        // Verify repository interactions; statement counts are asserted in CartServiceQueryCountTest
+        verify(cartRepository).findWithItemsByUserId(userId);
         verifyNoInteractions(userRepository); // Should not create new cart
+        verifyNoInteractions(cartItemRepository, productCache);
         verifyNoMoreInteractions(cartRepository); // Should not save new cart
     }
 
@@ -119,10 +129,9 @@ class CartServiceTest {
         User user = createTestUser(userId);
         Cart newCart = createTestCart(newCartId, userId);
 
-        when(cartRepository.findByUserId(userId)).thenReturn(Optional.empty());
+        when(cartRepository.findWithItemsByUserId(userId)).thenReturn(Optional.empty());
         when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        when(cartRepository.save(any(Cart.class))).thenReturn(newCart);
-        when(cartItemRepository.findByCartId(newCartId)).thenReturn(List.of()); // Empty cart
+        when(cartRepository.save(any(Cart.class))).thenReturn(newCart); // Empty cart
 
         // When
         CartResponse result = cartService.getCartByUserId(userId);
@@ -135,10 +144,10 @@ class CartServiceTest {
         assertEquals(BigDecimal.ZERO, result.getTotalAmount());
 
         // Verify repository interactions
-        verify(cartRepository).findByUserId(userId);
+        verify(cartRepository).findWithItemsByUserId(userId);
         verify(userRepository).findById(userId);
         verify(cartRepository).save(any(Cart.class));
-        verify(cartItemRepository).findByCartId(newCartId);
+        verifyNoInteractions(cartItemRepository);
     }
 
     @Test
@@ -146,7 +155,7 @@ class CartServiceTest {
         // Given
         Long userId = 999L;
 
-        when(cartRepository.findByUserId(userId)).thenReturn(Optional.empty());
+        when(cartRepository.findWithItemsByUserId(userId)).thenReturn(Optional.empty());
         when(userRepository.findById(userId)).thenReturn(Optional.empty());
 
         // When & Then
@@ -158,7 +167,7 @@ class CartServiceTest {
         assertEquals("user not found", exception.getMessage());
 
         // Verify repository interactions
-        verify(cartRepository).findByUserId(userId);
+        verify(cartRepository).findWithItemsByUserId(userId);
         verify(userRepository).findById(userId);
         verify(cartRepository, never()).save(any(Cart.class));
         verify(cartItemRepository, never()).findByCartId(any());
@@ -171,8 +180,7 @@ class CartServiceTest {
         Long cartId = 100L;
         Cart existingCart = createTestCart(cartId, userId);
 
-        when(cartRepository.findByUserId(userId)).thenReturn(Optional.of(existingCart));
-        when(cartItemRepository.findByCartId(cartId)).thenReturn(List.of()); // Empty list
+        when(cartRepository.findWithItemsByUserId(userId)).thenReturn(Optional.of(existingCart)); // Empty list
 
         // When
         CartResponse result = cartService.getCartByUserId(userId);
@@ -185,9 +193,8 @@ class CartServiceTest {
         assertEquals(BigDecimal.ZERO, result.getTotalAmount());
 
         // Verify repository interactions
-        verify(cartRepository).findByUserId(userId);
-        verify(cartItemRepository).findByCartId(cartId);
-        verifyNoInteractions(userRepository);
+        verify(cartRepository).findWithItemsByUserId(userId);
+        verifyNoInteractions(userRepository, cartItemRepository);
     }
 
     @Test
@@ -200,10 +207,9 @@ class CartServiceTest {
         Product product = createTestProduct(1L, "Single Product", BigDecimal.valueOf(25.50));
         CartItem item = createTestCartItem(1L, existingCart, product, 3);
 
-        List<CartItem> cartItems = List.of(item);
+        existingCart.getItems().add(item);
 
-        when(cartRepository.findByUserId(userId)).thenReturn(Optional.of(existingCart));
-        when(cartItemRepository.findByCartId(cartId)).thenReturn(cartItems);
+        when(cartRepository.findWithItemsByUserId(userId)).thenReturn(Optional.of(existingCart));
 
         // When
         CartResponse result = cartService.getCartByUserId(userId);
@@ -223,7 +229,190 @@ class CartServiceTest {
         assertEquals(3, itemResponse.getQuantity());
 
         // Verify repository interactions
-        verify(cartRepository).findByUserId(userId);
-        verify(cartItemRepository).findByCartId(cartId);
+        verify(cartRepository).findWithItemsByUserId(userId);
+        verifyNoInteractions(cartItemRepository);
+    }
+
+    // Tests for addToCart()
+    @Test
+    void addToCart_ShouldUpsertThenReadCartOnce() {
+        // Given
+        Long userId = 1L;
+        Long cartId = 100L;
+        Cart cartAfterUpsert = createTestCart(cartId, userId);
+        Product product = createTestProduct(1L, "Product 1", BigDecimal.valueOf(10.00));
+        cartAfterUpsert.getItems().add(createTestCartItem(1L, cartAfterUpsert, product, 5));
+
+        AddToCartRequest request = new AddToCartRequest();
+        request.setProductId(1L);
+        request.setQuantity(3);
+
+        when(productCache.findById(1L)).thenReturn(Optional.of(product));
+        when(cartItemRepository.upsertQuantity(userId, 1L, 3)).thenReturn(1);
+        when(cartRepository.findWithItemsByUserId(userId)).thenReturn(Optional.of(cartAfterUpsert));
+
+        // When
+        CartResponse result = cartService.addToCart(userId, request);
+
+        // Then
+        assertEquals(5, result.getTotalItems());
+        assertEquals(BigDecimal.valueOf(50.00), result.getTotalAmount());
+
+        // One atomic write plus the count bump, one read for the whole cart
+        verify(cartItemRepository).upsertQuantity(userId, 1L, 3);
+        verify(cartRepository).addToItemCount(userId, 3);
+        verify(cartRepository).findWithItemsByUserId(userId);
+        verifyNoMoreInteractions(cartRepository, cartItemRepository);
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void addToCart_WhenUserHasNoCart_ShouldCreateCartAndRetryUpsert() {
+        // Given
+        Long userId = 1L;
+        Long cartId = 200L;
+        User user = createTestUser(userId);
+        Cart newCart = createTestCart(cartId, userId);
+        Product product = createTestProduct(2L, "Product 2", BigDecimal.valueOf(15.00));
+        newCart.getItems().add(createTestCartItem(1L, newCart, product, 1));
+
+        AddToCartRequest request = new AddToCartRequest();
+        request.setProductId(2L);
+        request.setQuantity(1);
+
+        when(productCache.findById(2L)).thenReturn(Optional.of(product));
+        when(cartItemRepository.upsertQuantity(userId, 2L, 1)).thenReturn(0, 1);
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(cartRepository.save(any(Cart.class))).thenReturn(newCart);
+        when(cartRepository.findWithItemsByUserId(userId)).thenReturn(Optional.of(newCart));
+
+        // When
+        CartResponse result = cartService.addToCart(userId, request);
+
+        // Then
+        assertEquals(cartId, result.getCartID());
+        assertEquals(1, result.getItems().size());
+        assertEquals(2L, result.getItems().get(0).getProductId());
+
+        verify(cartItemRepository, times(2)).upsertQuantity(userId, 2L, 1);
+        verify(cartRepository).save(any(Cart.class));
+        verify(cartRepository).addToItemCount(userId, 1);
+    }
+
+    // Tests for applyOperations()
+    @Test
+    void applyOperations_ShouldBatchLoadProductsAndWriteCartOnce() {
+        // Given
+        Long userId = 1L;
+        Cart cart = createTestCart(100L, userId);
+        Product product1 = createTestProduct(1L, "Product 1", BigDecimal.valueOf(10.00));
+        Product product2 = createTestProduct(2L, "Product 2", BigDecimal.valueOf(15.00));
+        Product product3 = createTestProduct(3L, "Product 3", BigDecimal.valueOf(20.00));
+        CartItem item1 = createTestCartItem(1L, cart, product1, 2);
+        CartItem item2 = createTestCartItem(2L, cart, product2, 1);
+        cart.setItems(new ArrayList<>(List.of(item1, item2)));
+
+        List<CartItemOperation> operations = List.of(
+                new CartItemOperation(CartOperationType.ADD, 1L, 3),
+                new CartItemOperation(CartOperationType.REMOVE, 2L, null),
+                new CartItemOperation(CartOperationType.ADD, 2L, 2),
+                new CartItemOperation(CartOperationType.SET, 3L, 4));
+
+        when(productRepository.findAllById(anyIterable())).thenReturn(List.of(product1, product2, product3));
+        when(cartRepository.findWithItemsByUserId(userId)).thenReturn(Optional.of(cart));
+
+        // When
+        CartResponse result = cartService.applyOperations(userId, operations);
+
+        // Then
+        assertEquals(3, result.getItems().size());
+        assertEquals(11, result.getTotalItems()); // 5 + 2 + 4
+        assertEquals(BigDecimal.valueOf(160.00), result.getTotalAmount()); // (10*5) + (15*2) + (20*4)
+        assertEquals(5, item1.getQuantity());
+        // removed and re-added within the batch, so the existing line is kept rather than re-inserted
+        assertSame(item2, cart.getItems().get(1));
+        assertEquals(2, item2.getQuantity());
+
+        // One product batch, one cart read, one recount
+        verify(productRepository).findAllById(anyIterable());
+        verify(cartRepository).findWithItemsByUserId(userId);
+        verify(cartRepository).recountItems(userId);
+        verifyNoMoreInteractions(cartRepository, productRepository);
+        verifyNoInteractions(cartItemRepository, userRepository, productCache);
+    }
+
+    @Test
+    void applyOperations_WhenProductNotFound_ShouldThrowBeforeTouchingCart() {
+        // Given
+        Long userId = 1L;
+        Product product1 = createTestProduct(1L, "Product 1", BigDecimal.valueOf(10.00));
+        List<CartItemOperation> operations = List.of(
+                new CartItemOperation(CartOperationType.ADD, 1L, 1),
+                new CartItemOperation(CartOperationType.ADD, 999L, 1));
+
+        when(productRepository.findAllById(anyIterable())).thenReturn(List.of(product1));
+
+        // When & Then
+        assertThrows(ProductNotFoundException.class, () -> cartService.applyOperations(userId, operations));
+        verifyNoInteractions(cartRepository, cartItemRepository);
+    }
+
+    @Test
+    void applyOperations_WhenAddHasNoQuantity_ShouldThrowIllegalArgumentException() {
+        List<CartItemOperation> operations = List.of(new CartItemOperation(CartOperationType.ADD, 1L, null));
+
+        assertThrows(IllegalArgumentException.class, () -> cartService.applyOperations(1L, operations));
+        verifyNoInteractions(productRepository, cartRepository);
+    }
+
+    // Tests for clearCart()
+    @Test
+    void clearCart_ShouldDeleteLinesWithOneStatement() {
+        // Given
+        Long userId = 1L;
+        Cart cart = createTestCart(100L, userId);
+        when(cartRepository.findByUserId(userId)).thenReturn(Optional.of(cart));
+        when(cartItemRepository.deleteAllByCartId(100L)).thenReturn(3);
+
+        // When
+        cartService.clearCart(userId);
+
+        // Then
+        verify(cartItemRepository).deleteAllByCartId(100L);
+        verify(cartRepository).resetItemCount(100L);
+        verifyNoMoreInteractions(cartItemRepository); // lines are never loaded
+        verify(cartRepository, never()).save(any(Cart.class));
+    }
+
+    // Tests for getCartItemCount()
+    @Test
+    void getCartItemCount_ShouldReadMaintainedCountOnly() {
+        // Given
+        Long userId = 1L;
+        when(cartRepository.findItemCountByUserId(userId)).thenReturn(Optional.of(7));
+
+        // When
+        int count = cartService.getCartItemCount(userId);
+
+        // Then
+        assertEquals(7, count);
+        verify(cartRepository).findItemCountByUserId(userId);
+        verifyNoMoreInteractions(cartRepository);
+        verifyNoInteractions(cartItemRepository, userRepository);
+    }
+
+    @Test
+    void getCartItemCount_WhenUserHasNoCart_ShouldReturnZeroWithoutCreatingCart() {
+        // Given
+        Long userId = 1L;
+        when(cartRepository.findItemCountByUserId(userId)).thenReturn(Optional.empty());
+
+        // When
+        int count = cartService.getCartItemCount(userId);
+
+        // Then
+        assertEquals(0, count);
+        verify(cartRepository, never()).save(any(Cart.class));
+        verifyNoInteractions(userRepository);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,131 @@
+package amrmurad.nexusmart.services;
+
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.exceptions.orderExceptions.InsufficientStockException;
+import amrmurad.nexusmart.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class InventoryServiceConcurrencyTest {
+
+    private static final int THREADS = 64;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final List<Long> createdIds = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() {
+        productRepository.deleteAllById(createdIds);
+    }
+
+    private Product createProduct(String name, int stock) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(BigDecimal.valueOf(9.99));
+        product.setStockQuantity(stock);
+        Product saved = productRepository.save(product);
+        createdIds.add(saved.getId());
+        return saved;
+    }
+
+    // Every thread keeps buying until it is refused; the counts must add up to exactly the initial stock
+    private int buyUntilSoldOut(List<Map<Long, Integer>> orders) throws Exception {
+        AtomicInteger successfulOrders = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                Map<Long, Integer> order = orders.get(t % orders.size());
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    while (true) {
+                        try {
+                            inventoryService.decrement(order);
+                            successfulOrders.incrementAndGet();
+                        } catch (InsufficientStockException e) {
+                            return null;
+                        }
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS); // rethrows anything but a refusal, deadlocks included
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return successfulOrders.get();
+    }
+
+    @Test
+    void decrement_UnderContention_ShouldSellExactlyTheAvailableStock() throws Exception {
+        // Given
+        Product product = createProduct("Hot item", 500);
+
+        // When
+        int sold = buyUntilSoldOut(List.of(Map.of(product.getId(), 1)));
+
+        // Then
+        assertEquals(500, sold);
+        assertEquals(0, productRepository.findById(product.getId()).orElseThrow().getStockQuantity());
+    }
+
+    @Test
+    void decrement_MultiLineOrdersInOpposingOrder_ShouldNeitherOversellNorDeadlock() throws Exception {
+        // Given
+        Product first = createProduct("First", 300);
+        Product second = createProduct("Second", 200);
+
+        Map<Long, Integer> firstThenSecond = new LinkedHashMap<>();
+        firstThenSecond.put(first.getId(), 3);
+        firstThenSecond.put(second.getId(), 2);
+        Map<Long, Integer> secondThenFirst = new LinkedHashMap<>();
+        secondThenFirst.put(second.getId(), 2);
+        secondThenFirst.put(first.getId(), 3);
+
+        // When
+        int sold = buyUntilSoldOut(List.of(firstThenSecond, secondThenFirst));
+
+        // Then: both products run out after 100 orders, and a refused order leaves no partial decrement behind
+        assertEquals(100, sold);
+        assertEquals(0, productRepository.findById(first.getId()).orElseThrow().getStockQuantity());
+        assertEquals(0, productRepository.findById(second.getId()).orElseThrow().getStockQuantity());
+    }
+
+    @Test
+    void decrement_WhenOneLineIsShort_ShouldRollBackTheOtherLines() {
+        // Given
+        Product plenty = createProduct("Plenty", 10);
+        Product scarce = createProduct("Scarce", 1);
+
+        // When & Then
+        assertThrows(InsufficientStockException.class,
+                () -> inventoryService.decrement(Map.of(plenty.getId(), 5, scarce.getId(), 2)));
+        assertEquals(10, productRepository.findById(plenty.getId()).orElseThrow().getStockQuantity());
+        assertEquals(1, productRepository.findById(scarce.getId()).orElseThrow().getStockQuantity());
+    }
+}
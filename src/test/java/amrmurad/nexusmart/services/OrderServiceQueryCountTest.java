@@ -0,0 +1,195 @@
+package amrmurad.nexusmart.services;
+
+import amrmurad.nexusmart.DTOs.orderDTOs.PlaceOrderResponse;
+import amrmurad.nexusmart.entities.Cart;
+import amrmurad.nexusmart.entities.CartItem;
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.entities.User;
+import amrmurad.nexusmart.enums.Role;
+import amrmurad.nexusmart.repository.CartItemsRepository;
+import amrmurad.nexusmart.repository.CartRepository;
+import amrmurad.nexusmart.repository.ProductRepository;
+import amrmurad.nexusmart.repository.UserRepository;
+import com.stripe.model.PaymentIntent;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// Checkout against a real persistence context; only the Stripe call is mocked
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "nexusmart.cart.store=database",
+        "nexusmart.cart.reaper.enabled=false",
+        "nexusmart.catalog-snapshot.enabled=false"
+})
+class OrderServiceQueryCountTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemsRepository cartItemsRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private StripePaymentService stripePaymentService;
+
+    private Statistics statistics;
+    private User user;
+    private Long cartId;
+    private final List<Long> productIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String name = "checkout-stats-" + UUID.randomUUID();
+        user = userRepository.save(User.builder()
+                .username(name)
+                .email(name + "@example.com")
+                .password("secret")
+                .role(Role.USER)
+                .build());
+
+        PaymentIntent paymentIntent = mock(PaymentIntent.class);
+        when(paymentIntent.getId()).thenReturn("pi_test");
+        when(paymentIntent.getClientSecret()).thenReturn("secret_test");
+        when(stripePaymentService.createPaymentIntent(anyLong(), eq("usd"), anyString(), any())).thenReturn(paymentIntent);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        List<Long> orderIds = jdbcTemplate.queryForList("SELECT id FROM orders WHERE user_id = ?", Long.class, user.getId());
+        for (Long orderId : orderIds) {
+            jdbcTemplate.update("DELETE FROM stock_reservations WHERE order_id = ?", orderId);
+            jdbcTemplate.update("DELETE FROM order_items WHERE order_id = ?", orderId);
+            jdbcTemplate.update("DELETE FROM orders WHERE id = ?", orderId);
+        }
+        if (cartId != null) {
+            jdbcTemplate.update("DELETE FROM cart_items WHERE cart_id = ?", cartId);
+            jdbcTemplate.update("DELETE FROM carts WHERE id = ?", cartId);
+        }
+        productRepository.deleteAllById(productIds);
+        userRepository.delete(user);
+    }
+
+    private Product createProduct(String name) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(BigDecimal.valueOf(5.00));
+        product.setStockQuantity(100);
+        Product saved = productRepository.save(product);
+        productIds.add(saved.getId());
+        return saved;
+    }
+
+    // One line per product, each with quantity 2
+    private List<Product> createCart(int lines) {
+        List<Product> products = new ArrayList<>();
+        Cart cart = new Cart();
+        cart.setUser(user);
+        for (int i = 0; i < lines; i++) {
+            Product product = createProduct("Checkout stats product " + i);
+            products.add(product);
+            CartItem item = new CartItem();
+            item.setCart(cart);
+            item.setProduct(product);
+            item.setQuantity(2);
+            cart.getItems().add(item);
+        }
+        cart.setItemCount(lines * 2);
+        cartId = cartRepository.save(cart).getId();
+        return products;
+    }
+
+    private Map<Long, Integer> cartQuantities() {
+        Map<Long, Integer> quantities = new HashMap<>();
+        jdbcTemplate.query("SELECT product_id, quantity FROM cart_items WHERE cart_id = ?",
+                rs -> {
+                    quantities.put(rs.getLong("product_id"), rs.getInt("quantity"));
+                },
+                cartId);
+        return quantities;
+    }
+
+    @Test
+    void placeOrder_WithManyLines_ShouldNotRunStatementsPerLine() {
+        // Given
+        createCart(10);
+        statistics.clear();
+
+        // When
+        PlaceOrderResponse response = orderService.placeOrder((int) user.getId());
+
+        // Then: nothing is loaded lazily, and the statement count does not grow with the lines.
+        // Statements Hibernate prepares: the cart read, the order insert, one batched order_items
+        // insert, the two line clearing statements, the item recount, and at most one sequence
+        // block fetch each for orders and order_items (stock and hold go through JdbcTemplate)
+        assertNotNull(response.getOrderId());
+        assertEquals(0, statistics.getEntityFetchCount());
+        assertEquals(0, statistics.getCollectionFetchCount());
+        assertEquals(11, statistics.getEntityInsertCount());
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements <= 8, "checkout prepared " + statements + " statements");
+        assertTrue(cartQuantities().isEmpty());
+    }
+
+    @Test
+    void placeOrder_ShouldKeepLinesAddedWhileThePaymentIntentWasCreated() {
+        // Given: during the Stripe round trip the user tops up one line and adds a new product
+        List<Product> ordered = createCart(2);
+        Product added = createProduct("Added during checkout");
+        PaymentIntent paymentIntent = mock(PaymentIntent.class);
+        when(paymentIntent.getId()).thenReturn("pi_test");
+        when(stripePaymentService.createPaymentIntent(anyLong(), eq("usd"), anyString(), any())).thenAnswer(invocation -> {
+            transactionTemplate.executeWithoutResult(status -> {
+                cartItemsRepository.upsertQuantity(user.getId(), ordered.get(0).getId(), 1);
+                cartItemsRepository.upsertQuantity(user.getId(), added.getId(), 3);
+                cartRepository.recountItems(user.getId());
+            });
+            return paymentIntent;
+        });
+
+        // When
+        orderService.placeOrder((int) user.getId());
+
+        // Then: only what the order took is gone from the cart
+        assertEquals(Map.of(ordered.get(0).getId(), 1, added.getId(), 3), cartQuantities());
+        assertEquals(4, cartRepository.findItemCountByUserId(user.getId()).orElseThrow());
+    }
+}
@@ -0,0 +1,487 @@
+package amrmurad.nexusmart.services;
+
+import amrmurad.nexusmart.DTOs.orderDTOs.OrderCursor;
+import amrmurad.nexusmart.DTOs.orderDTOs.OrderPageResponse;
+import amrmurad.nexusmart.DTOs.orderDTOs.PlaceOrderResponse;
+import amrmurad.nexusmart.cart.WriteBehindCartStore;
+import amrmurad.nexusmart.checkout.StockReservationLedger;
+import amrmurad.nexusmart.entities.*;
+import amrmurad.nexusmart.enums.OrderStatus;
+import amrmurad.nexusmart.enums.PaymentMethod;
+import amrmurad.nexusmart.enums.PaymentStatus;
+import amrmurad.nexusmart.exceptions.orderExceptions.EmptyCartException;
+import amrmurad.nexusmart.exceptions.orderExceptions.InsufficientStockException;
+import amrmurad.nexusmart.repository.*;
+import com.stripe.model.PaymentIntent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private OrderItemsRepository orderItemsRepository;
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private CartItemsRepository cartItemsRepository;
+
+    @Mock
+    private StripePaymentService stripePaymentService;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private StockReservationLedger reservationLedger;
+
+    @Mock
+    private WriteBehindCartStore cartStore;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private OrderService orderService;
+
+    // Helper methods for creating test entities
+    private Product createTestProduct(Long productId, String name, BigDecimal price, int stock) {
+        Product product = new Product();
+        product.setId(productId);
+        product.setName(name);
+        product.setPrice(price);
+        product.setStockQuantity(stock);
+        return product;
+    }
+
+    private Cart createTestCart(Long cartId, CartItem... items) {
+        Cart cart = new Cart();
+        cart.setId(cartId);
+        for (CartItem item : items) {
+            item.setCart(cart);
+            cart.getItems().add(item);
+        }
+        return cart;
+    }
+
+    private CartItem createTestCartItem(Product product, int quantity) {
+        CartItem item = new CartItem();
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        return item;
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        // run transaction callbacks inline
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+        lenient().doAnswer(invocation -> {
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        lenient().when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> {
+            Order order = invocation.getArgument(0);
+            order.setId(42L);
+            return order;
+        });
+    }
+
+    // Tests for placeOrder()
+    @Test
+    void placeOrder_ShouldReadCartOnceAndBatchTheWrites() {
+        // Given
+        Integer userId = 1;
+        Product product1 = createTestProduct(1L, "Product 1", BigDecimal.valueOf(10.00), 5);
+        Product product2 = createTestProduct(2L, "Product 2", BigDecimal.valueOf(15.00), 5);
+        CartItem line1 = createTestCartItem(product1, 2);
+        line1.setId(11L);
+        CartItem line2 = createTestCartItem(product2, 1);
+        line2.setId(12L);
+        Cart cart = createTestCart(100L, line1, line2);
+
+        PaymentIntent paymentIntent = mock(PaymentIntent.class);
+        when(paymentIntent.getId()).thenReturn("pi_123");
+        when(paymentIntent.getClientSecret()).thenReturn("secret_123");
+
+        when(cartRepository.findWithItemsByUserId(1L)).thenReturn(Optional.of(cart));
+        when(stripePaymentService.createPaymentIntent(3500L, "usd", "42", PaymentMethod.CREDIT_CARD))
+                .thenReturn(paymentIntent);
+
+        // When
+        PlaceOrderResponse response = orderService.placeOrder(userId);
+
+        // Then
+        assertEquals(42L, response.getOrderId());
+        assertEquals("pi_123", response.getPaymentReference());
+        assertEquals("secret_123", response.getPaymentClientSecret());
+
+        // One read for cart, lines and products
+        verify(cartRepository).findWithItemsByUserId(1L);
+        // One order, one batch of items, one stock batch
+        verify(orderRepository).save(argThat((Order order) -> order.getTotalAmount().compareTo(BigDecimal.valueOf(35)) == 0
+                && order.getStatus() == OrderStatus.PENDING));
+        verify(orderItemsRepository).saveAll(argThat((List<OrderItems> items) -> items.size() == 2));
+        verify(inventoryService).decrement(Map.of(1L, 2, 2L, 1));
+        verify(reservationLedger).hold(42L);
+        // Only the snapshot's lines are cleared, by id and ordered quantity, without looking the cart up again
+        verify(cartItemsRepository).deleteOrderedLines(aryEq(new Long[]{11L, 12L}), aryEq(new Integer[]{2, 1}));
+        verify(cartItemsRepository).subtractOrderedQuantities(aryEq(new Long[]{11L, 12L}), aryEq(new Integer[]{2, 1}));
+        verify(cartRepository).recountItems(1L);
+        verify(cartStore).subtractAfterCommit(1L, Map.of(1L, 2, 2L, 1));
+
+        verifyNoMoreInteractions(cartRepository, cartItemsRepository, orderRepository, orderItemsRepository, inventoryService);
+        verifyNoInteractions(paymentRepository);
+    }
+
+    @Test
+    void placeOrder_WhenCartIsEmpty_ShouldThrowEmptyCartException() {
+        // Given
+        when(cartRepository.findWithItemsByUserId(1L)).thenReturn(Optional.of(createTestCart(100L)));
+
+        // When & Then
+        assertThrows(EmptyCartException.class, () -> orderService.placeOrder(1));
+        verifyNoInteractions(orderRepository, orderItemsRepository, inventoryService, stripePaymentService);
+    }
+
+    @Test
+    void placeOrder_WhenStockIsShort_ShouldThrowBeforeCreatingOrder() {
+        // Given
+        Product product = createTestProduct(1L, "Product 1", BigDecimal.valueOf(10.00), 1);
+        when(cartRepository.findWithItemsByUserId(1L))
+                .thenReturn(Optional.of(createTestCart(100L, createTestCartItem(product, 3))));
+
+        // When & Then
+        assertThrows(InsufficientStockException.class, () -> orderService.placeOrder(1));
+        verifyNoInteractions(orderRepository, orderItemsRepository, inventoryService, stripePaymentService);
+    }
+
+    @Test
+    void placeOrder_WhenPaymentIntentFails_ShouldCancelOrderAndKeepCart() {
+        // Given
+        Product product = createTestProduct(1L, "Product 1", BigDecimal.valueOf(10.00), 5);
+        when(cartRepository.findWithItemsByUserId(1L))
+                .thenReturn(Optional.of(createTestCart(100L, createTestCartItem(product, 2))));
+        when(stripePaymentService.createPaymentIntent(anyLong(), anyString(), anyString(), any()))
+                .thenThrow(new RuntimeException("Payment intent creation failed"));
+        when(orderRepository.updateStatusIf(42L, OrderStatus.PENDING, OrderStatus.CANCELLED)).thenReturn(1);
+        OrderItems orderItem = new OrderItems();
+        orderItem.setProductId(1);
+        orderItem.setQuantity(2);
+        when(orderItemsRepository.findByOrderId(42)).thenReturn(new ArrayList<>(List.of(orderItem)));
+
+        // When & Then
+        assertThrows(RuntimeException.class, () -> orderService.placeOrder(1));
+        verify(inventoryService).restore(Map.of(1L, 2));
+        verify(reservationLedger).release(42L);
+        verifyNoInteractions(cartItemsRepository);
+    }
+
+    @Test
+    void placeOrder_WhenPaymentIntentAndCompensationFail_ShouldRethrowAndLeaveOrderToTheSweep() {
+        // Given
+        Product product = createTestProduct(1L, "Product 1", BigDecimal.valueOf(10.00), 5);
+        when(cartRepository.findWithItemsByUserId(1L))
+                .thenReturn(Optional.of(createTestCart(100L, createTestCartItem(product, 2))));
+        RuntimeException stripeFailure = new RuntimeException("Payment intent creation failed");
+        when(stripePaymentService.createPaymentIntent(anyLong(), anyString(), anyString(), any()))
+                .thenThrow(stripeFailure);
+        when(orderRepository.updateStatusIf(42L, OrderStatus.PENDING, OrderStatus.CANCELLED))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+
+        // When
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> orderService.placeOrder(1));
+
+        // Then: the caller sees the Stripe failure, the hold stays for the expiry sweep, the cart is kept
+        assertSame(stripeFailure, thrown);
+        assertEquals(1, thrown.getSuppressed().length);
+        assertInstanceOf(DataAccessResourceFailureException.class, thrown.getSuppressed()[0]);
+        verify(inventoryService, never()).restore(any());
+        verifyNoInteractions(cartItemsRepository);
+        assertEquals(1, meterRegistry.timer("nexusmart.checkout.transaction", "phase", "compensate").count());
+    }
+
+    @Test
+    void placeOrder_WhenClearingTheCartFails_ShouldStillReturnTheOrder() {
+        // Given
+        Product product = createTestProduct(1L, "Product 1", BigDecimal.valueOf(10.00), 5);
+        when(cartRepository.findWithItemsByUserId(1L))
+                .thenReturn(Optional.of(createTestCart(100L, createTestCartItem(product, 2))));
+        PaymentIntent paymentIntent = mock(PaymentIntent.class);
+        when(paymentIntent.getId()).thenReturn("pi_123");
+        when(paymentIntent.getClientSecret()).thenReturn("secret_123");
+        when(stripePaymentService.createPaymentIntent(2000L, "usd", "42", PaymentMethod.CREDIT_CARD))
+                .thenReturn(paymentIntent);
+        doThrow(new DataAccessResourceFailureException("database down"))
+                .when(cartItemsRepository).deleteOrderedLines(any(), any());
+
+        // When
+        PlaceOrderResponse response = orderService.placeOrder(1);
+
+        // Then: the order stands with its hold, only the cart still shows the items
+        assertEquals(42L, response.getOrderId());
+        assertEquals("pi_123", response.getPaymentReference());
+        verify(reservationLedger).hold(42L);
+        verify(orderRepository, never()).updateStatusIf(anyLong(), any(), any());
+        verify(reservationLedger, never()).release(anyLong());
+        verify(cartStore, never()).subtractAfterCommit(anyLong(), any());
+        assertEquals(1, meterRegistry.timer("nexusmart.checkout.transaction", "phase", "clear-cart").count());
+        assertEquals(1, meterRegistry.timer("nexusmart.checkout.payment-intent").count());
+    }
+
+    // Tests for handlePaymentSuccess()
+    private Payment createTestPayment(PaymentStatus status) {
+        Payment payment = new Payment();
+        payment.setId(7L);
+        payment.setOrderId(42);
+        payment.setPaymentReference("pi_123");
+        payment.setPaymentStatus(status);
+        return payment;
+    }
+
+    private Order createCancelledOrder() {
+        Order order = new Order();
+        order.setId(42L);
+        order.setStatus(OrderStatus.CANCELLED);
+        OrderItems orderItem = new OrderItems();
+        orderItem.setProductId(1);
+        orderItem.setQuantity(2);
+        when(orderRepository.findById(42L)).thenReturn(Optional.of(order));
+        when(orderItemsRepository.findByOrderId(42)).thenReturn(new ArrayList<>(List.of(orderItem)));
+        return order;
+    }
+
+    @Test
+    void handlePaymentSuccess_WithLiveHold_ShouldSettleHoldAndConfirmOrder() {
+        // Given
+        Payment payment = createTestPayment(PaymentStatus.PENDING);
+        when(paymentRepository.findByPaymentReference("pi_123")).thenReturn(Optional.of(payment));
+        when(orderRepository.updateStatusIf(42L, OrderStatus.PENDING, OrderStatus.CONFIRMED)).thenReturn(1);
+
+        // When
+        orderService.handlePaymentSuccess("pi_123");
+
+        // Then
+        verify(reservationLedger).commit(42L);
+        assertEquals(PaymentStatus.COMPLETED, payment.getPaymentStatus());
+        assertNotNull(payment.getPaidAt());
+        verify(paymentRepository).save(payment);
+        verifyNoInteractions(inventoryService);
+    }
+
+    @Test
+    void handlePaymentSuccess_AfterExpiryWithStockBack_ShouldTakeStockAgainAndConfirm() {
+        // Given
+        Payment payment = createTestPayment(PaymentStatus.PENDING);
+        when(paymentRepository.findByPaymentReference("pi_123")).thenReturn(Optional.of(payment));
+        Order order = createCancelledOrder();
+        when(inventoryService.tryDecrement(Map.of(1L, 2))).thenReturn(true);
+
+        // When
+        orderService.handlePaymentSuccess("pi_123");
+
+        // Then
+        assertEquals(OrderStatus.CONFIRMED, order.getStatus());
+        verify(orderRepository).save(order);
+        assertEquals(PaymentStatus.COMPLETED, payment.getPaymentStatus());
+    }
+
+    @Test
+    void handlePaymentSuccess_AfterExpiryWithStockSold_ShouldMarkPaymentForRefundInsteadOfThrowing() {
+        // Given
+        Payment payment = createTestPayment(PaymentStatus.PENDING);
+        when(paymentRepository.findByPaymentReference("pi_123")).thenReturn(Optional.of(payment));
+        Order order = createCancelledOrder();
+        when(inventoryService.tryDecrement(Map.of(1L, 2))).thenReturn(false);
+
+        // When
+        assertDoesNotThrow(() -> orderService.handlePaymentSuccess("pi_123"));
+
+        // Then: the order stays cancelled and the payment is committed as owed back
+        assertEquals(OrderStatus.CANCELLED, order.getStatus());
+        verify(orderRepository, never()).save(any(Order.class));
+        assertEquals(PaymentStatus.REFUND_PENDING, payment.getPaymentStatus());
+        verify(paymentRepository).save(payment);
+        verify(inventoryService, never()).decrement(any());
+    }
+
+    @Test
+    void handlePaymentSuccess_WhenAlreadyMarkedForRefund_ShouldIgnoreTheRetriedWebhook() {
+        // Given
+        Payment payment = createTestPayment(PaymentStatus.REFUND_PENDING);
+        when(paymentRepository.findByPaymentReference("pi_123")).thenReturn(Optional.of(payment));
+
+        // When
+        orderService.handlePaymentSuccess("pi_123");
+
+        // Then
+        assertEquals(PaymentStatus.REFUND_PENDING, payment.getPaymentStatus());
+        verifyNoInteractions(reservationLedger, orderRepository, inventoryService);
+        verify(paymentRepository, never()).save(any());
+    }
+
+    // Tests for releaseExpiredReservations() and refundLatePayments()
+    @Test
+    void releaseExpiredReservations_ShouldCancelOrderThenItsPaymentIntent() {
+        // Given
+        when(reservationLedger.findExpired(anyInt())).thenReturn(List.of(42L));
+        when(reservationLedger.claimExpired(42L)).thenReturn(true);
+        when(orderRepository.updateStatusIf(42L, OrderStatus.PENDING, OrderStatus.CANCELLED)).thenReturn(1);
+        when(orderItemsRepository.findByOrderId(42)).thenReturn(new ArrayList<>());
+        when(paymentRepository.findByOrderId(42)).thenReturn(Optional.of(createTestPayment(PaymentStatus.PENDING)));
+
+        // When
+        orderService.releaseExpiredReservations();
+
+        // Then
+        verify(inventoryService).restore(Map.of());
+        verify(stripePaymentService).cancelPaymentIntent("pi_123");
+    }
+
+    @Test
+    void releaseExpiredReservations_WhenHoldWasSettledMeanwhile_ShouldLeaveOrderAndIntentAlone() {
+        // Given
+        when(reservationLedger.findExpired(anyInt())).thenReturn(List.of(42L));
+        when(reservationLedger.claimExpired(42L)).thenReturn(false);
+
+        // When
+        orderService.releaseExpiredReservations();
+
+        // Then
+        verifyNoInteractions(orderRepository, inventoryService, stripePaymentService);
+    }
+
+    @Test
+    void releaseExpiredReservations_WhenIntentCancellationFails_ShouldKeepTheCancellation() {
+        // Given
+        when(reservationLedger.findExpired(anyInt())).thenReturn(List.of(42L));
+        when(reservationLedger.claimExpired(42L)).thenReturn(true);
+        when(orderRepository.updateStatusIf(42L, OrderStatus.PENDING, OrderStatus.CANCELLED)).thenReturn(1);
+        when(orderItemsRepository.findByOrderId(42)).thenReturn(new ArrayList<>());
+        when(paymentRepository.findByOrderId(42)).thenReturn(Optional.of(createTestPayment(PaymentStatus.PENDING)));
+        when(stripePaymentService.cancelPaymentIntent("pi_123")).thenThrow(new RuntimeException("already succeeded"));
+
+        // When & Then: a late payment is refunded by its webhook, the sweep carries on
+        assertDoesNotThrow(() -> orderService.releaseExpiredReservations());
+    }
+
+    @Test
+    void refundLatePayments_ShouldRefundAndMarkPaymentRefunded() {
+        // Given
+        when(paymentRepository.findByPaymentStatus(PaymentStatus.REFUND_PENDING))
+                .thenReturn(List.of(createTestPayment(PaymentStatus.REFUND_PENDING)));
+
+        // When
+        orderService.refundLatePayments();
+
+        // Then
+        verify(stripePaymentService).refundPayment("pi_123");
+        verify(paymentRepository).updateStatusIf(7L, PaymentStatus.REFUND_PENDING, PaymentStatus.REFUNDED);
+    }
+
+    @Test
+    void refundLatePayments_WhenRefundFails_ShouldKeepPaymentPendingForTheNextRun() {
+        // Given
+        when(paymentRepository.findByPaymentStatus(PaymentStatus.REFUND_PENDING))
+                .thenReturn(List.of(createTestPayment(PaymentStatus.REFUND_PENDING)));
+        when(stripePaymentService.refundPayment("pi_123")).thenThrow(new RuntimeException("Refund failed"));
+
+        // When
+        orderService.refundLatePayments();
+
+        // Then
+        verify(paymentRepository, never()).updateStatusIf(anyLong(), any(), any());
+    }
+
+    // Tests for getUserOrdersPage()
+    private Order createTestOrder(Long orderId, LocalDateTime createdAt) {
+        Order order = new Order();
+        order.setId(orderId);
+        order.setUserId(1);
+        order.setCreatedAt(createdAt);
+        return order;
+    }
+
+    @Test
+    void getUserOrdersPage_ShouldFetchOneExtraRowAndReturnCursorOfLastItem() {
+        // Given
+        LocalDateTime now = LocalDateTime.of(2025, 1, 1, 12, 0);
+        Order newest = createTestOrder(3L, now);
+        Order middle = createTestOrder(2L, now.minusMinutes(1));
+        Order oldest = createTestOrder(1L, now.minusMinutes(2));
+        when(orderRepository.findPageByUserId(eq(1), any(LocalDateTime.class), eq(Long.MAX_VALUE), any()))
+                .thenReturn(List.of(newest, middle, oldest));
+
+        // When
+        OrderPageResponse page = orderService.getUserOrdersPage(1, null, 2);
+
+        // Then
+        assertEquals(List.of(newest, middle), page.getItems());
+        assertTrue(page.isHasNext());
+        OrderCursor next = OrderCursor.decode(page.getNextCursor());
+        assertEquals(middle.getCreatedAt(), next.createdAt());
+        assertEquals(2L, next.lastId());
+        verify(orderRepository).findPageByUserId(eq(1), any(LocalDateTime.class), eq(Long.MAX_VALUE),
+                argThat((Pageable pageable) -> pageable.getPageSize() == 3));
+    }
+
+    @Test
+    void getUserOrdersPage_WithCursor_ShouldContinueAfterItWithoutLastPageCursor() {
+        // Given
+        LocalDateTime createdAt = LocalDateTime.of(2025, 1, 1, 11, 59);
+        String cursor = new OrderCursor(createdAt, 2L).encode();
+        Order oldest = createTestOrder(1L, createdAt.minusMinutes(1));
+        when(orderRepository.findPageByUserId(eq(1), eq(createdAt), eq(2L), any())).thenReturn(List.of(oldest));
+
+        // When
+        OrderPageResponse page = orderService.getUserOrdersPage(1, cursor, 2);
+
+        // Then
+        assertEquals(List.of(oldest), page.getItems());
+        assertFalse(page.isHasNext());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void getUserOrdersPage_WithInvalidSizeOrCursor_ShouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> orderService.getUserOrdersPage(1, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> orderService.getUserOrdersPage(1, null, 101));
+        assertThrows(IllegalArgumentException.class, () -> orderService.getUserOrdersPage(1, "not-a-cursor", 20));
+        verifyNoInteractions(orderRepository);
+    }
+}
@@ -0,0 +1,162 @@
+package amrmurad.nexusmart.services;
+
+import amrmurad.nexusmart.DTOs.productDTOs.ProductImportError;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductImportReport;
+import amrmurad.nexusmart.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductImportServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private ProductImportService productImportService;
+
+    // names of the rows sent with each batch insert
+    private final List<List<String>> insertedBatches = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        productImportService = new ProductImportService(productRepository, jdbcTemplate, transactionTemplate,
+                new ObjectMapper(), eventPublisher);
+        lenient().doAnswer(invocation -> {
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        lenient().when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any())).thenAnswer(invocation -> {
+            List<String> names = namesOf(invocation);
+            insertedBatches.add(names);
+            // stands in for a constraint the validation rules do not know about
+            if (names.contains("Rejected by database")) {
+                throw new DataIntegrityViolationException("check constraint violated");
+            }
+            return new int[][]{new int[names.size()]};
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> namesOf(InvocationOnMock invocation) throws SQLException {
+        List<String> names = new ArrayList<>();
+        PreparedStatement ps = mock(PreparedStatement.class);
+        doAnswer(call -> {
+            if ((int) call.getArgument(0) == 1) {
+                names.add(call.getArgument(1));
+            }
+            return null;
+        }).when(ps).setString(anyInt(), any());
+        ParameterizedPreparedStatementSetter<Object> setter = invocation.getArgument(3);
+        for (Object row : (Iterable<Object>) invocation.getArgument(1)) {
+            setter.setValues(ps, row);
+        }
+        return names;
+    }
+
+    private ProductImportReport importLines(String contentType, String... lines) throws IOException {
+        byte[] body = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+        return productImportService.importProducts(new ByteArrayInputStream(body), contentType);
+    }
+
+    // Tests for splitCsvLine()
+    @Test
+    void splitCsvLine_ShouldHandleQuotedCommasEscapedQuotesAndEmptyFields() {
+        assertEquals(List.of("a", "b, c", "say \"hi\"", "", "d"),
+                ProductImportService.splitCsvLine("a,\"b, c\",\"say \"\"hi\"\"\",,d"));
+        assertEquals(List.of("", ""), ProductImportService.splitCsvLine(","));
+    }
+
+    @Test
+    void splitCsvLine_WithUnterminatedQuote_ShouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> ProductImportService.splitCsvLine("a,\"b"));
+    }
+
+    // Tests for importProducts()
+    @Test
+    void importProducts_ShouldReportBadRowsWithTheirLineNumbers() throws IOException {
+        ProductImportReport report = importLines(ProductImportService.CSV,
+                "name,description,price,stockQuantity",
+                "Keyboard,Mechanical,49.99,10",
+                "Mouse,,abc,5",
+                "",
+                ",No name,10.00,1",
+                "Monitor,\"27\"\" screen, IPS\",199.00,3",
+                "keyboard,Duplicate of line 2,10.00,1",
+                "Desk," + "x".repeat(1001) + ",10.00,1",
+                "Lamp,,100000000.00,1",
+                "z".repeat(256) + ",Name too long,10.00,1",
+                "Chair,,89.00,4");
+
+        assertEquals(9, report.getTotalRows());
+        assertEquals(3, report.getImportedCount());
+        assertEquals(6, report.getFailedCount());
+        assertFalse(report.isErrorsTruncated());
+        assertEquals(List.of(3L, 5L, 7L, 8L, 9L, 10L), report.getErrors().stream()
+                .map(ProductImportError::getLine).toList());
+        assertEquals(List.of(List.of("Keyboard", "Monitor", "Chair")), insertedBatches);
+    }
+
+    @Test
+    void importProducts_WhenDatabaseRejectsARow_ShouldStoreTheRestOfItsChunk() throws IOException {
+        ProductImportReport report = importLines(ProductImportService.NDJSON,
+                "{\"name\":\"Keyboard\",\"price\":49.99,\"stockQuantity\":10}",
+                "{\"name\":\"Rejected by database\",\"price\":1.00,\"stockQuantity\":1}",
+                "{\"name\":\"Mouse\",\"price\":19.99,\"stockQuantity\":5}");
+
+        assertEquals(2, report.getImportedCount());
+        assertEquals(1, report.getFailedCount());
+        assertEquals(2L, report.getErrors().get(0).getLine());
+        assertTrue(report.getErrors().get(0).getMessage().startsWith("row could not be stored"));
+    }
+
+    @Test
+    void importProducts_WithNullNdjsonLine_ShouldReportItInsteadOfAbortingTheImport() throws IOException {
+        ProductImportReport report = importLines(ProductImportService.NDJSON,
+                "null",
+                "{\"name\":\"Keyboard\",\"price\":49.99,\"stockQuantity\":10}",
+                "{not json");
+
+        assertEquals(1, report.getImportedCount());
+        assertEquals(2, report.getFailedCount());
+        assertEquals(List.of(1L, 3L), report.getErrors().stream().map(ProductImportError::getLine).toList());
+    }
+
+    @Test
+    void importProducts_WithUnsupportedContentType_ShouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> importLines("application/json", "{}"));
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,243 @@
+package amrmurad.nexusmart.services;
+
+import amrmurad.nexusmart.DTOs.productDTOs.ProductBulkUpdateRequest;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductBulkUpdateResponse;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductBulkUpdateResult;
+import amrmurad.nexusmart.DTOs.productDTOs.ProductSummary;
+import amrmurad.nexusmart.catalog.*;
+import amrmurad.nexusmart.entities.Product;
+import amrmurad.nexusmart.enums.BulkUpdateStatus;
+import amrmurad.nexusmart.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductCache productCache;
+
+    @Mock
+    private ProductNameIndex productNameIndex;
+
+    @Mock
+    private ProductPriceIndex productPriceIndex;
+
+    @Mock
+    private LowStockMonitor lowStockMonitor;
+
+    @Mock
+    private ProductAutocomplete productAutocomplete;
+
+    @Mock
+    private CatalogSnapshot catalogSnapshot;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private ProductService productService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        // run transaction callbacks inline
+        lenient().doAnswer(invocation -> {
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    private List<ProductBulkUpdateRequest> priceUpdates(int count) {
+        List<ProductBulkUpdateRequest> updates = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            updates.add(new ProductBulkUpdateRequest(id, new BigDecimal("9.99"), null));
+        }
+        return updates;
+    }
+
+    // Tests for bulkUpdate()
+    @Test
+    void bulkUpdate_ShouldReportEveryItemInRequestOrder() {
+        // Given
+        List<ProductBulkUpdateRequest> updates = new ArrayList<>(priceUpdates(2));
+        updates.add(new ProductBulkUpdateRequest(3L, null, -1));
+        updates.add(new ProductBulkUpdateRequest(4L, new BigDecimal("100000000"), null));
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+                .thenReturn(new int[][]{{1, 0}});
+
+        // When
+        ProductBulkUpdateResponse response = productService.bulkUpdate(updates);
+
+        // Then
+        assertEquals(1, response.getUpdatedCount());
+        assertEquals(3, response.getFailedCount());
+        assertEquals(List.of(BulkUpdateStatus.UPDATED, BulkUpdateStatus.NOT_FOUND, BulkUpdateStatus.INVALID,
+                        BulkUpdateStatus.INVALID),
+                response.getResults().stream().map(ProductBulkUpdateResult::getStatus).toList());
+        verify(productRepository).findAllById(List.of(1L));
+    }
+
+    @Test
+    void bulkUpdate_ShouldPublishStockOnlyChangesWithoutAPriceChange() {
+        // Given
+        Product repriced = new Product();
+        repriced.setId(1L);
+        Product restocked = new Product();
+        restocked.setId(2L);
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+                .thenReturn(new int[][]{{1, 1}});
+        when(productRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(repriced, restocked));
+
+        // When
+        productService.bulkUpdate(List.of(new ProductBulkUpdateRequest(1L, new BigDecimal("9.99"), null),
+                new ProductBulkUpdateRequest(2L, null, 5)));
+
+        // Then
+        verify(eventPublisher).publishEvent(ProductChangedEvent.upserted(repriced));
+        verify(eventPublisher).publishEvent(ProductChangedEvent.stockChanged(restocked));
+    }
+
+    @Test
+    void bulkUpdate_WhenAChunkFails_ShouldMarkItsItemsFailedAndKeepEarlierChunks() {
+        // Given: the second chunk holds a single item and is rejected by the database
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any())).thenAnswer(invocation -> {
+            Collection<?> chunk = invocation.getArgument(1);
+            if (chunk.size() == 1) {
+                throw new DataIntegrityViolationException("numeric field overflow");
+            }
+            int[] rowCounts = new int[chunk.size()];
+            Arrays.fill(rowCounts, 1);
+            return new int[][]{rowCounts};
+        });
+
+        // When
+        ProductBulkUpdateResponse response = productService.bulkUpdate(priceUpdates(1001));
+
+        // Then
+        assertEquals(1000, response.getUpdatedCount());
+        assertEquals(1, response.getFailedCount());
+        ProductBulkUpdateResult failed = response.getResults().get(1000);
+        assertEquals(1001L, failed.getId());
+        assertEquals(BulkUpdateStatus.FAILED, failed.getStatus());
+        assertTrue(failed.getMessage().contains("numeric field overflow"));
+        assertTrue(response.getResults().subList(0, 1000).stream()
+                .allMatch(result -> result.getStatus() == BulkUpdateStatus.UPDATED));
+    }
+
+    @Test
+    void bulkUpdate_WithNoUpdates_ShouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> productService.bulkUpdate(List.of()));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    // Tests for getProductByPriceRange()
+    private ProductSummary summary(Long id, String price) {
+        return new ProductSummary(id, "Product " + id, new BigDecimal(price), 1, null, 1L);
+    }
+
+    @Test
+    void getProductByPriceRange_WhenIndexIsLoading_ShouldPushOffsetAndLimitIntoTheQuery() {
+        // Given
+        List<ProductSummary> rows = List.of(summary(2L, "5.00"));
+        when(productPriceIndex.isReady()).thenReturn(false);
+        when(productRepository.findSummariesByPriceBetween(BigDecimal.ONE, BigDecimal.TEN, 40, 20)).thenReturn(rows);
+
+        // When
+        List<ProductSummary> result = productService.getProductByPriceRange(BigDecimal.ONE, BigDecimal.TEN, 40, 20);
+
+        // Then
+        assertEquals(rows, result);
+    }
+
+    @Test
+    void getProductByPriceRange_WhenIndexIsReady_ShouldReturnRowsInIndexOrder() {
+        // Given
+        when(productPriceIndex.isReady()).thenReturn(true);
+        when(productPriceIndex.findIdsInRange(BigDecimal.ONE, BigDecimal.TEN, 0, 3)).thenReturn(List.of(3L, 1L, 2L));
+        when(productRepository.findSummariesByIdIn(List.of(3L, 1L, 2L)))
+                .thenReturn(List.of(summary(1L, "2.00"), summary(2L, "2.00"), summary(3L, "1.50")));
+
+        // When
+        List<ProductSummary> result = productService.getProductByPriceRange(BigDecimal.ONE, BigDecimal.TEN, 0, 3);
+
+        // Then
+        assertEquals(List.of(3L, 1L, 2L), result.stream().map(ProductSummary::id).toList());
+        verify(productRepository, never()).findSummariesByPriceBetween(any(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void getProductByPriceRange_WithInvalidArguments_ShouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> productService.getProductByPriceRange(BigDecimal.TEN, BigDecimal.ONE, 0, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> productService.getProductByPriceRange(BigDecimal.ONE, BigDecimal.TEN, -1, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> productService.getProductByPriceRange(BigDecimal.ONE, BigDecimal.TEN, 0, 101));
+        verifyNoInteractions(productRepository, productPriceIndex);
+    }
+
+    // Tests for searchProductByName()
+    @Test
+    void searchProductByName_WithoutLimit_ShouldCapTheIndexSearchAtTheDefault() {
+        // Given
+        when(productNameIndex.isReady()).thenReturn(true);
+        when(productNameIndex.search("mouse", 50)).thenReturn(List.of(2L));
+        when(productRepository.findSummariesByIdIn(List.of(2L))).thenReturn(List.of(summary(2L, "9.99")));
+
+        // When
+        List<ProductSummary> result = productService.searchProductByName("mouse", null);
+
+        // Then
+        assertEquals(List.of(2L), result.stream().map(ProductSummary::id).toList());
+    }
+
+    @Test
+    void searchProductByName_WhenIndexIsLoading_ShouldPushTheLimitIntoTheQuery() {
+        // Given
+        List<ProductSummary> rows = List.of(summary(1L, "9.99"));
+        when(productNameIndex.isReady()).thenReturn(false);
+        when(productRepository.findSummariesByNameContaining("mouse", 120)).thenReturn(rows);
+
+        // When
+        List<ProductSummary> result = productService.searchProductByName(" mouse ", 120);
+
+        // Then
+        assertEquals(rows, result);
+    }
+
+    @Test
+    void searchProductByName_WithLimitOutOfRange_ShouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> productService.searchProductByName("mouse", 0));
+        assertThrows(IllegalArgumentException.class, () -> productService.searchProductByName("mouse", 201));
+        verifyNoInteractions(productRepository, productNameIndex);
+    }
+}